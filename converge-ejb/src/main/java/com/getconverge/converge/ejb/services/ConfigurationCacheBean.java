@@ -0,0 +1,380 @@
+/*
+ * Copyright (C) 2014 Converge Consulting Limited
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.getconverge.converge.ejb.services;
+
+import com.getconverge.converge.entities.Configuration;
+import com.getconverge.converge.entities.ConfigurationKey;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.ResourceBundle;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.EJB;
+import javax.ejb.LocalBean;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.ejb.Timeout;
+import javax.ejb.TimerConfig;
+import javax.ejb.TimerService;
+import javax.persistence.PersistenceException;
+
+/**
+ * Singleton session bean holding a snapshot of the effective configuration
+ * values used by the {@link ConfigurationServiceBean}. The snapshot is loaded
+ * with a single query upon start-up and merged with the default values of the
+ * configuration bundle.
+ * <p>
+ * The snapshot is an immutable {@link EnumMap} that is read without locking.
+ * Changes are made by copying the snapshot and publishing the copy. Keys
+ * removed by {@link #invalidate(ConfigurationKey)} are loaded again upon the
+ * next lookup.</p>
+ * <p>
+ * When several application server nodes share the database, each node polls
+ * the versions of the persisted configurations every
+ * {@link ConfigurationKey#CONFIGURATION_POLL_INTERVAL} seconds and invalidates
+ * the configurations changed by other nodes.</p>
+ *
+ * @author Allan Lykke Christensen
+ */
+@Singleton
+@Startup
+@LocalBean
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class ConfigurationCacheBean {
+
+    private static final Logger LOG = Logger.getLogger(ConfigurationCacheBean.class.getName());
+
+    private static final String CONFIGURATION_BUNDLE = "Converge";
+
+    private static final long MILLISECONDS_PER_SECOND = 1000L;
+
+    @EJB
+    private DaoServiceBean daoService;
+
+    @Resource
+    private TimerService timerService;
+
+    private final ConfigurationVersionTracker versionTracker = new ConfigurationVersionTracker();
+
+    private final ResourceBundle defaultConfigurations = ResourceBundle.getBundle(CONFIGURATION_BUNDLE);
+
+    private volatile Map<ConfigurationKey, ConfigurationValue> snapshot = Collections.emptyMap();
+
+    private final AtomicLong generation = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Loads the snapshot upon start-up and schedules the polling of changes
+     * made by other nodes. If the configuration could not be loaded, the
+     * values are loaded upon lookup instead.
+     */
+    @PostConstruct
+    public void initialize() {
+        try {
+            reload();
+        } catch (PersistenceException ex) {
+            LOG.log(Level.WARNING, "Could not load the configuration snapshot. Configuration will be loaded upon lookup", ex);
+        }
+
+        ConfigurationValue pollIntervalValue = snapshot.get(ConfigurationKey.CONFIGURATION_POLL_INTERVAL);
+        if (pollIntervalValue == null) {
+            pollIntervalValue = new ConfigurationValue(defaultConfigurations.getString(ConfigurationKey.CONFIGURATION_POLL_INTERVAL.name()));
+        }
+        long pollInterval = pollIntervalValue.as(Long.class) * MILLISECONDS_PER_SECOND;
+        if (pollInterval > 0) {
+            timerService.createIntervalTimer(pollInterval, pollInterval, new TimerConfig(null, false));
+        }
+    }
+
+    /**
+     * Invalidates the configurations that were changed since the last poll.
+     * Only the keys, unique identifiers and versions of the persisted
+     * configurations are queried.
+     */
+    @Timeout
+    public void poll() {
+        List<Object[]> rows = daoService.findWithNamedQuery(Object[].class, Configuration.FIND_VERSIONS);
+        Map<ConfigurationKey, ConfigurationVersionTracker.Version> versions = new EnumMap<>(ConfigurationKey.class);
+        for (Object[] row : rows) {
+            versions.put((ConfigurationKey) row[0], new ConfigurationVersionTracker.Version((Long) row[1], (Long) row[2]));
+        }
+
+        Set<ConfigurationKey> changed = versionTracker.update(versions);
+        if (!changed.isEmpty()) {
+            LOG.log(Level.FINE, "Configurations {0} were changed by another node", changed);
+            // The shared entity cache of this node holds the values from before the change
+            daoService.evict(Configuration.class);
+            invalidate(changed);
+        }
+    }
+
+    /**
+     * Replaces the snapshot with the default configuration values merged with
+     * all the customized configuration values from the persisted storage.
+     */
+    public void reload() {
+        long loadedAtGeneration = generation.get();
+        Map<ConfigurationKey, ConfigurationValue> values = new EnumMap<>(ConfigurationKey.class);
+        Map<ConfigurationKey, ConfigurationVersionTracker.Version> versions = new EnumMap<>(ConfigurationKey.class);
+        for (ConfigurationKey key : ConfigurationKey.values()) {
+            if (defaultConfigurations.containsKey(key.name())) {
+                values.put(key, new ConfigurationValue(defaultConfigurations.getString(key.name())));
+            }
+        }
+        for (Configuration configuration : daoService.findAllReadOnly(Configuration.class)) {
+            versions.put(configuration.getKey(), new ConfigurationVersionTracker.Version(configuration.getId(), configuration.getVersion()));
+            if (configuration.getValue() != null) {
+                values.put(configuration.getKey(), new ConfigurationValue(configuration.getValue()));
+            }
+        }
+
+        synchronized (this) {
+            versionTracker.reset(versions);
+            if (loadedAtGeneration == generation.get()) {
+                publish(values);
+            }
+        }
+    }
+
+    /**
+     * Gets the value of a configuration. If the value is not in the snapshot,
+     * it is loaded from the persisted storage or the configuration bundle and
+     * added to the snapshot.
+     *
+     * @param key Key of the configuration
+     * @return Value of the configuration, or {@code null} if the configuration
+     * does not have a value
+     */
+    public ConfigurationValue get(ConfigurationKey key) {
+        ConfigurationValue value = snapshot.get(key);
+        if (value != null) {
+            hits.incrementAndGet();
+            return value;
+        }
+
+        misses.incrementAndGet();
+        long loadedAtGeneration = generation.get();
+        String loadedValue = load(key);
+        if (loadedValue != null) {
+            value = new ConfigurationValue(loadedValue);
+            synchronized (this) {
+                if (loadedAtGeneration == generation.get()) {
+                    Map<ConfigurationKey, ConfigurationValue> values = new EnumMap<>(ConfigurationKey.class);
+                    values.putAll(snapshot);
+                    values.put(key, value);
+                    publish(values);
+                }
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Gets the values of a {@link Set} of configurations. Values that are not
+     * in the snapshot are loaded from the persisted storage with a single
+     * query, falling back to the configuration bundle, and added to the
+     * snapshot.
+     *
+     * @param keys Keys of the configurations
+     * @return Immutable {@link Map} of configuration values. Keys without a
+     * value are not included in the {@link Map}
+     */
+    public Map<ConfigurationKey, ConfigurationValue> getAll(Set<ConfigurationKey> keys) {
+        Map<ConfigurationKey, ConfigurationValue> current = snapshot;
+        Map<ConfigurationKey, ConfigurationValue> values = new EnumMap<>(ConfigurationKey.class);
+        Set<ConfigurationKey> missing = EnumSet.noneOf(ConfigurationKey.class);
+        for (ConfigurationKey key : keys) {
+            ConfigurationValue value = current.get(key);
+            if (value == null) {
+                missing.add(key);
+            } else {
+                values.put(key, value);
+            }
+        }
+        hits.addAndGet(values.size());
+
+        if (!missing.isEmpty()) {
+            misses.addAndGet(missing.size());
+            long loadedAtGeneration = generation.get();
+            Map<ConfigurationKey, ConfigurationValue> loaded = loadAll(missing);
+            values.putAll(loaded);
+            synchronized (this) {
+                if (loadedAtGeneration == generation.get()) {
+                    Map<ConfigurationKey, ConfigurationValue> updated = new EnumMap<>(ConfigurationKey.class);
+                    updated.putAll(snapshot);
+                    updated.putAll(loaded);
+                    publish(updated);
+                }
+            }
+        }
+        return Collections.unmodifiableMap(values);
+    }
+
+    /**
+     * Gets the current snapshot of the configuration values. The snapshot does
+     * not change after it has been returned.
+     *
+     * @return Immutable {@link Map} of the configuration values currently in
+     * the snapshot
+     */
+    public Map<ConfigurationKey, ConfigurationValue> getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Removes a configuration from the snapshot. The configuration is loaded
+     * again upon the next lookup.
+     *
+     * @param key Key of the configuration to remove from the snapshot
+     */
+    public void invalidate(ConfigurationKey key) {
+        invalidate(EnumSet.of(key));
+    }
+
+    /**
+     * Removes a {@link Set} of configurations from the snapshot. The
+     * configurations are loaded again upon the next lookup. The cached results
+     * of the {@link Configuration#FIND_BY_KEY} query are removed as well.
+     *
+     * @param keys Keys of the configurations to remove from the snapshot
+     */
+    public void invalidate(Set<ConfigurationKey> keys) {
+        daoService.evictQueryResults(Configuration.FIND_BY_KEY);
+        synchronized (this) {
+            generation.incrementAndGet();
+            Map<ConfigurationKey, ConfigurationValue> values = new EnumMap<>(ConfigurationKey.class);
+            values.putAll(snapshot);
+            if (values.keySet().removeAll(keys)) {
+                publish(values);
+            }
+        }
+    }
+
+    /**
+     * Removes all the configuration values from the snapshot, the shared
+     * entity cache and the cached results of the
+     * {@link Configuration#FIND_BY_KEY} query.
+     */
+    public void invalidateAll() {
+        daoService.evict(Configuration.class);
+        daoService.evictQueryResults(Configuration.FIND_BY_KEY);
+        synchronized (this) {
+            generation.incrementAndGet();
+            snapshot = Collections.emptyMap();
+        }
+    }
+
+    /**
+     * Gets the number of lookups served from the snapshot.
+     *
+     * @return Number of lookups served from the snapshot
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Gets the number of lookups that could not be served from the snapshot.
+     *
+     * @return Number of lookups that could not be served from the snapshot
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Gets the number of configuration values currently in the snapshot.
+     *
+     * @return Number of configuration values in the snapshot
+     */
+    public int size() {
+        return snapshot.size();
+    }
+
+    /**
+     * Loads the value of a configuration from the persisted storage. If the
+     * configuration is not customized, or is customized without a value, the
+     * default value is loaded from the configuration bundle.
+     *
+     * @param key Key of the configuration value
+     * @return Value of the configuration, or {@code null} if the configuration
+     * has neither a customized nor a default value
+     */
+    private String load(ConfigurationKey key) {
+        Configuration configuration = daoService.findFirstWithNamedQuery(Configuration.class,
+                Configuration.FIND_BY_KEY,
+                QueryBuilder.with(Configuration.PARAM_FIND_BY_KEY_KEY, key).parameters());
+        if (configuration != null && configuration.getValue() != null) {
+            return configuration.getValue();
+        }
+        if (LOG.isLoggable(Level.FINEST)) {
+            LOG.log(Level.FINEST, "Configuration [{0}] is not customized. Using default configuration value", key);
+        }
+        if (!defaultConfigurations.containsKey(key.name())) {
+            return null;
+        }
+        return defaultConfigurations.getString(key.name());
+    }
+
+    /**
+     * Loads the values of a {@link Set} of configurations from the persisted
+     * storage using a single query. Configurations that are not customized, or
+     * are customized without a value, are loaded from the configuration
+     * bundle.
+     *
+     * @param keys Keys of the configurations to load
+     * @return {@link Map} of loaded configuration values
+     */
+    private Map<ConfigurationKey, ConfigurationValue> loadAll(Set<ConfigurationKey> keys) {
+        Map<ConfigurationKey, ConfigurationValue> values = new EnumMap<>(ConfigurationKey.class);
+        List<Configuration> configurations = daoService.findWithNamedQueryReadOnly(Configuration.class, Configuration.FIND_BY_KEYS,
+                QueryBuilder.with(Configuration.PARAM_FIND_BY_KEYS_KEYS, keys).parameters());
+        for (Configuration configuration : configurations) {
+            if (configuration.getValue() != null) {
+                values.put(configuration.getKey(), new ConfigurationValue(configuration.getValue()));
+            }
+        }
+        for (ConfigurationKey key : keys) {
+            if (!values.containsKey(key) && defaultConfigurations.containsKey(key.name())) {
+                values.put(key, new ConfigurationValue(defaultConfigurations.getString(key.name())));
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Publishes a new snapshot. Must only be called while holding the lock of
+     * the bean.
+     *
+     * @param values Configuration values to publish
+     */
+    private void publish(Map<ConfigurationKey, ConfigurationValue> values) {
+        snapshot = Collections.unmodifiableMap(values);
+    }
+}
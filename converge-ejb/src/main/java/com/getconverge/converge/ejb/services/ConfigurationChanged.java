@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2014 Converge Consulting Limited
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.getconverge.converge.ejb.services;
+
+import com.getconverge.converge.entities.ConfigurationKey;
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import javax.inject.Qualifier;
+
+/**
+ * Qualifier of a {@link ConfigurationChangedEvent} identifying the
+ * {@link ConfigurationKey} that changed. Observers use the qualifier to only
+ * be notified about changes to a given key, e.g.
+ * <p>
+ * <code>public void onChange(@Observes(during = TransactionPhase.AFTER_SUCCESS)
+ * &#64;ConfigurationChanged(ConfigurationKey.NEWSWIRE_INTERVAL)
+ * ConfigurationChangedEvent event)</code></p>
+ *
+ * @author Allan Lykke Christensen
+ */
+@Qualifier
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD, ElementType.FIELD, ElementType.PARAMETER, ElementType.TYPE})
+public @interface ConfigurationChanged {
+
+    /**
+     * {@link ConfigurationKey} that changed.
+     *
+     * @return {@link ConfigurationKey} that changed
+     */
+    ConfigurationKey value();
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2014 Converge Consulting Limited
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.getconverge.converge.ejb.services;
+
+import com.getconverge.converge.entities.ConfigurationKey;
+import java.io.Serializable;
+
+/**
+ * Event fired by the {@link ConfigurationServiceBean} when a configuration is
+ * updated or reset. The event is fired within the transaction making the
+ * change. Observers that must only react to committed changes should observe
+ * the event during {@code TransactionPhase.AFTER_SUCCESS}.
+ *
+ * @author Allan Lykke Christensen
+ */
+public class ConfigurationChangedEvent implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final ConfigurationKey key;
+
+    private final String value;
+
+    private final boolean reset;
+
+    /**
+     * Creates a new instance of {@link ConfigurationChangedEvent}.
+     *
+     * @param key Key of the configuration that changed
+     * @param value New value of the configuration, or {@code null} if the
+     * configuration was reset
+     * @param reset {@code true} if the configuration was reset to its default
+     * value, otherwise {@code false}
+     */
+    public ConfigurationChangedEvent(ConfigurationKey key, String value, boolean reset) {
+        this.key = key;
+        this.value = value;
+        this.reset = reset;
+    }
+
+    /**
+     * Gets the key of the configuration that changed.
+     *
+     * @return Key of the configuration that changed
+     */
+    public ConfigurationKey getKey() {
+        return key;
+    }
+
+    /**
+     * Gets the new value of the configuration.
+     *
+     * @return New value of the configuration, or {@code null} if the
+     * configuration was reset
+     */
+    public String getValue() {
+        return value;
+    }
+
+    /**
+     * Gets the new value of the configuration as a given type.
+     *
+     * @param <T> Type to convert the value into
+     * @param type Type to convert the value into
+     * @return New value of the configuration converted to {@code type}, or
+     * {@code null} if the configuration was reset
+     */
+    public <T> T getValue(Class<T> type) {
+        if (value == null) {
+            return null;
+        }
+        return ConfigurationValue.convert(value, type);
+    }
+
+    /**
+     * Determines if the configuration was reset to its default value.
+     *
+     * @return {@code true} if the configuration was reset to its default
+     * value, otherwise {@code false}
+     */
+    public boolean isReset() {
+        return reset;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getName() + "[key=" + key + "/reset=" + reset + "]";
+    }
+}
@@ -18,14 +18,31 @@ package com.getconverge.converge.ejb.services;
 
 import com.getconverge.converge.entities.Configuration;
 import com.getconverge.converge.entities.ConfigurationKey;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Locale;
-import java.util.ResourceBundle;
+import java.util.Map;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.annotation.Resource;
 import javax.ejb.EJB;
+import javax.ejb.SessionContext;
 import javax.ejb.Stateless;
 import javax.ejb.LocalBean;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.enterprise.event.Event;
+import javax.enterprise.inject.Any;
+import javax.enterprise.util.AnnotationLiteral;
+import javax.inject.Inject;
+import javax.persistence.PersistenceException;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
 
 /**
  * Stateless session bean providing a service for obtaining the application
@@ -39,12 +56,26 @@ public class ConfigurationServiceBean {
 
     private static final Logger LOG = Logger.getLogger(ConfigurationServiceBean.class.getName());
 
-    private static final String CONFIGURATION_BUNDLE = "Converge";
+    /**
+     * Version of a configuration that is not customized.
+     */
+    public static final long NOT_CUSTOMIZED = 0L;
 
     @EJB
     private DaoServiceBean daoService;
 
-    private final ResourceBundle defaultConfigurations = ResourceBundle.getBundle(CONFIGURATION_BUNDLE);
+    @EJB
+    private ConfigurationCacheBean cache;
+
+    @Resource
+    private TransactionSynchronizationRegistry txRegistry;
+
+    @Resource
+    private SessionContext context;
+
+    @Inject
+    @Any
+    private Event<ConfigurationChangedEvent> configurationChanged;
 
     /**
      * Gets a configuration value as a given type.
@@ -66,43 +97,31 @@ public class ConfigurationServiceBean {
      * @param key Key of the configuration value
      * @param defaultValue Default value if the configuration could not be found
      * @return Value matching the given key or {@code defaultValue} if the key
-     * could not be matched
+     * could not be matched or does not have a value
      */
     public <T> T get(Class<T> type, ConfigurationKey key, T defaultValue) {
+        ConfigurationValue value = cache.get(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        return value.as(type);
+    }
 
-        try {
-            Configuration configuration = daoService.findObjectWithNamedQuery(Configuration.class,
-                    Configuration.FIND_BY_KEY,
-                    QueryBuilder.with(Configuration.PARAM_FIND_BY_KEY_KEY, key));
-            return (T) convertStringToType(configuration.getValue(), type);
-        } catch (DataNotFoundException ex) {
-            LOG.log(Level.FINEST, "Configuration [" + key + "] is not customized. Using default configuration value", ex);
-            String cfgStringValue = defaultConfigurations.getString(key.name());
-            return (T) convertStringToType(cfgStringValue, type);
-        }
-    }
-
-    /**
-     * Converts a String to a given time. <em>Developer note: If many times are
-     * needed, then consider migrating to ConverterUtils in Apache Commons
-     * BeanUtils.
-     *
-     * @param value Value to convert
-     * @param type Type of convert the value into
-     * @return Converted object
-     */
-    private Object convertStringToType(String value, Class type) {
-        Object cfgValue = value;
-        if (type == String.class) {
-            cfgValue = value;
-        } else if (type == Integer.class) {
-            cfgValue = Integer.valueOf((String) cfgValue);
-        } else if (type == Long.class) {
-            cfgValue = Long.valueOf((String) cfgValue);
-        } else {
-            throw new UnsupportedOperationException("Convertion from String to " + type.getName() + " is not supported");
+    /**
+     * Gets the values of a {@link Set} of configurations. The values are
+     * resolved using at most a single query. Configurations that are not
+     * customized are resolved from the default configuration.
+     *
+     * @param keys Keys of the configuration values
+     * @return {@link Map} of configuration values matching the given keys.
+     * Keys without a value are not included in the {@link Map}
+     */
+    public Map<ConfigurationKey, String> getAll(Set<ConfigurationKey> keys) {
+        Map<ConfigurationKey, String> values = new EnumMap<>(ConfigurationKey.class);
+        for (Map.Entry<ConfigurationKey, ConfigurationValue> entry : cache.getAll(keys).entrySet()) {
+            values.put(entry.getKey(), entry.getValue().getValue());
         }
-        return cfgValue;
+        return values;
     }
 
     /**
@@ -111,19 +130,160 @@ public class ConfigurationServiceBean {
      *
      * @param key Key of the configuration
      * @param value Value of the configuration
+     * @throws IllegalArgumentException If {@code value} cannot be converted to
+     * the type of the {@link ConfigurationKey}
      */
     public void set(ConfigurationKey key, String value) {
-        List results = daoService.findWithNamedQuery(Configuration.FIND_BY_KEY,
-                QueryBuilder.with("cfgKey", key).parameters());
-        if (results.size() == 1) {
-            Configuration entry = (Configuration) results.get(0);
-            entry.setValue(value);
-            daoService.update(entry);
+        setAll(Collections.singletonMap(key, value));
+    }
+
+    /**
+     * Updates the value of a configuration only if the configuration has not
+     * been changed since it was at {@code expectedVersion}. The update is made
+     * with a single conditional statement without locking the configuration.
+     * <p>
+     * The configuration is always updated or created in a transaction of its
+     * own, which is committed when this method returns {@code true} regardless
+     * of the outcome of the transaction of the caller. A configuration created
+     * concurrently by another node is only detected by the database when the
+     * new configuration is written, which marks the transaction for rollback.
+     * Using a transaction of its own lets such a conflict be reported as
+     * {@code false} rather than failing the transaction of the caller.
+     *
+     * @param key Key of the configuration
+     * @param expectedVersion Version of the configuration expected by the
+     * caller as returned by {@link #getConfigurationVersion(ConfigurationKey)},
+     * or {@link #NOT_CUSTOMIZED} if the configuration is expected not to be
+     * customized
+     * @param value Value of the configuration
+     * @return {@code true} if the configuration was updated, or {@code false}
+     * if the configuration was changed since {@code expectedVersion}
+     * @throws IllegalArgumentException If {@code value} cannot be converted to
+     * the type of the {@link ConfigurationKey}
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public boolean set(ConfigurationKey key, long expectedVersion, String value) {
+        validate(key, value);
+
+        if (expectedVersion == NOT_CUSTOMIZED) {
+            if (!createIfNotCustomized(key, value)) {
+                return false;
+            }
         } else {
-            Configuration entry = new Configuration();
-            entry.setKey(key);
-            entry.setValue(value);
-            daoService.create(entry);
+            int updated = daoService.executeNamedQuery(Configuration.UPDATE_IF_VERSION,
+                    QueryBuilder.with(Configuration.PARAM_UPDATE_IF_VERSION_KEY, key)
+                    .and(Configuration.PARAM_UPDATE_IF_VERSION_VALUE, value)
+                    .and(Configuration.PARAM_UPDATE_IF_VERSION_VERSION, expectedVersion));
+            if (updated == 0) {
+                return false;
+            }
+        }
+
+        invalidate(EnumSet.of(key));
+        fireConfigurationChanged(new ConfigurationChangedEvent(key, value, false));
+        return true;
+    }
+
+    /**
+     * Creates a configuration that is not customized. The configuration is
+     * written immediately, so that a configuration created concurrently with
+     * the same key causes {@code false} to be returned and the transaction to
+     * be rolled back.
+     *
+     * @param key Key of the configuration
+     * @param value Value of the configuration
+     * @return {@code true} if the configuration was created, or {@code false}
+     * if the configuration is already customized
+     */
+    private boolean createIfNotCustomized(ConfigurationKey key, String value) {
+        if (getConfigurationVersion(key) != NOT_CUSTOMIZED) {
+            return false;
+        }
+        try {
+            daoService.createDeferred(new Configuration(key, value));
+            daoService.getEntityManager().flush();
+            return true;
+        } catch (PersistenceException ex) {
+            LOG.log(Level.FINE, "Configuration [{0}] was customized concurrently", key);
+            context.setRollbackOnly();
+            return false;
+        }
+    }
+
+    /**
+     * Gets the current version of a configuration. The version is used for
+     * updating the configuration using
+     * {@link #set(ConfigurationKey, long, String)}. The version is read from
+     * the database, bypassing the shared cache.
+     *
+     * @param key Key of the configuration
+     * @return Current version of the configuration, or {@link #NOT_CUSTOMIZED}
+     * if the configuration is not customized
+     */
+    public long getConfigurationVersion(ConfigurationKey key) {
+        Long version = daoService.findFirstWithNamedQuery(Long.class, Configuration.FIND_VERSION_BY_KEY,
+                QueryBuilder.with(Configuration.PARAM_FIND_BY_KEY_KEY, key).parameters());
+        if (version == null) {
+            return NOT_CUSTOMIZED;
+        }
+        return version;
+    }
+
+    /**
+     * Updates the values of a {@link Map} of configurations in a single
+     * transaction. Existing configurations are found using a single query and
+     * new configurations are inserted without being refreshed.
+     *
+     * @param values {@link Map} of configuration keys and their values
+     * @throws IllegalArgumentException If a value cannot be converted to the
+     * type of its {@link ConfigurationKey}. No values are updated in this case
+     */
+    public void setAll(Map<ConfigurationKey, String> values) {
+        if (values.isEmpty()) {
+            return;
+        }
+        for (Map.Entry<ConfigurationKey, String> value : values.entrySet()) {
+            validate(value.getKey(), value.getValue());
+        }
+
+        Set<ConfigurationKey> keys = EnumSet.copyOf(values.keySet());
+        List<Configuration> existing = daoService.findWithNamedQuery(Configuration.class, Configuration.FIND_BY_KEYS,
+                QueryBuilder.with(Configuration.PARAM_FIND_BY_KEYS_KEYS, keys).parameters());
+        Set<ConfigurationKey> newKeys = EnumSet.copyOf(keys);
+        for (Configuration entry : existing) {
+            entry.setValue(values.get(entry.getKey()));
+            newKeys.remove(entry.getKey());
+        }
+
+        List<Configuration> created = new ArrayList<>(newKeys.size());
+        for (ConfigurationKey key : newKeys) {
+            created.add(new Configuration(key, values.get(key)));
+        }
+        daoService.persistAll(created);
+        invalidate(keys);
+
+        for (ConfigurationKey key : keys) {
+            fireConfigurationChanged(new ConfigurationChangedEvent(key, values.get(key), false));
+        }
+    }
+
+    /**
+     * Validates that a value can be converted to the type of a
+     * {@link ConfigurationKey}.
+     *
+     * @param key Key of the configuration
+     * @param value Value of the configuration
+     * @throws IllegalArgumentException If {@code value} cannot be converted to
+     * the type of the {@link ConfigurationKey}
+     */
+    private void validate(ConfigurationKey key, String value) {
+        if (value == null) {
+            return;
+        }
+        try {
+            ConfigurationValue.convert(value, key.getType());
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("[" + value + "] is not a valid value for configuration [" + key + "] of type " + key.getType().getName(), ex);
         }
     }
 
@@ -133,15 +293,55 @@ public class ConfigurationServiceBean {
      * @param key {@link ConfigurationKey} for which to reset the value
      */
     public void reset(ConfigurationKey key) {
-        try {
-            Configuration configuration = daoService.findObjectWithNamedQuery(Configuration.class,
-                    Configuration.FIND_BY_KEY,
-                    QueryBuilder.with(Configuration.PARAM_FIND_BY_KEY_KEY, key));
+        Configuration configuration = daoService.findFirstWithNamedQuery(Configuration.class,
+                Configuration.FIND_BY_KEY,
+                QueryBuilder.with(Configuration.PARAM_FIND_BY_KEY_KEY, key).parameters());
 
-            daoService.delete(Configuration.class, configuration.getId());
-        } catch (DataNotFoundException ex) {
-            LOG.log(Level.FINEST, "Configuration [" + key + "] is not customized. Resetting is not necessary", ex);
+        if (configuration == null) {
+            if (LOG.isLoggable(Level.FINEST)) {
+                LOG.log(Level.FINEST, "Configuration [{0}] is not customized. Resetting is not necessary", key);
+            }
+            return;
         }
+
+        daoService.getEntityManager().remove(configuration);
+        invalidate(EnumSet.of(key));
+        fireConfigurationChanged(new ConfigurationChangedEvent(key, null, true));
+    }
+
+    /**
+     * Removes configurations from the {@link ConfigurationCacheBean}. The
+     * configurations are removed immediately and again upon completion of the
+     * current transaction, so that a value read by a concurrent transaction
+     * before the change was committed does not remain in the cache.
+     *
+     * @param keys Keys of the configurations to invalidate
+     */
+    private void invalidate(final Set<ConfigurationKey> keys) {
+        cache.invalidate(keys);
+        if (txRegistry.getTransactionStatus() == Status.STATUS_ACTIVE) {
+            txRegistry.registerInterposedSynchronization(new Synchronization() {
+
+                @Override
+                public void beforeCompletion() {
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    cache.invalidate(keys);
+                }
+            });
+        }
+    }
+
+    /**
+     * Fires a {@link ConfigurationChangedEvent} qualified by the
+     * {@link ConfigurationKey} that changed.
+     *
+     * @param event Event to fire
+     */
+    private void fireConfigurationChanged(ConfigurationChangedEvent event) {
+        configurationChanged.select(new ConfigurationChangedLiteral(event.getKey())).fire(event);
     }
 
     /**
@@ -150,9 +350,8 @@ public class ConfigurationServiceBean {
      * @return {@link Locale} of the application
      */
     public Locale getApplicationLocale() {
-        String language = get(String.class, ConfigurationKey.LANGUAGE);
-        String country = get(String.class, ConfigurationKey.COUNTRY);
-        return new Locale(language, country);
+        Map<ConfigurationKey, String> locale = getAll(EnumSet.of(ConfigurationKey.LANGUAGE, ConfigurationKey.COUNTRY));
+        return new Locale(locale.get(ConfigurationKey.LANGUAGE), locale.get(ConfigurationKey.COUNTRY));
     }
 
     /**
@@ -185,4 +384,23 @@ public class ConfigurationServiceBean {
     public String getLongVersion() {
         return getVersion() + " " + getBuildTime();
     }
+
+    /**
+     * Literal of the {@link ConfigurationChanged} qualifier.
+     */
+    private static final class ConfigurationChangedLiteral extends AnnotationLiteral<ConfigurationChanged> implements ConfigurationChanged {
+
+        private static final long serialVersionUID = 1L;
+
+        private final ConfigurationKey value;
+
+        ConfigurationChangedLiteral(ConfigurationKey value) {
+            this.value = value;
+        }
+
+        @Override
+        public ConfigurationKey value() {
+            return value;
+        }
+    }
 }
@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2014 Converge Consulting Limited
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.getconverge.converge.ejb.services;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Value of a configuration. The value is stored as a {@link String} and
+ * converted to the requested type upon the first request. Subsequent requests
+ * for the same type are served from the already converted value.
+ *
+ * @author Allan Lykke Christensen
+ */
+public final class ConfigurationValue {
+
+    private static final Set<String> TIME_ZONE_IDS = new HashSet<>(Arrays.asList(TimeZone.getAvailableIDs()));
+
+    private static final String LOCALE_SEPARATOR = "_";
+
+    private final String value;
+
+    private final ConcurrentMap<Class<?>, Object> converted = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new instance of {@link ConfigurationValue}.
+     *
+     * @param value {@link String} value of the configuration
+     */
+    public ConfigurationValue(String value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Configuration value cannot be null");
+        }
+        this.value = value;
+    }
+
+    /**
+     * Gets the {@link String} value of the configuration.
+     *
+     * @return {@link String} value of the configuration
+     */
+    public String getValue() {
+        return value;
+    }
+
+    /**
+     * Gets the value of the configuration as a given type.
+     *
+     * @param <T> Type to convert the value into
+     * @param type Type to convert the value into
+     * @return Value of the configuration converted to {@code type}
+     * @throws IllegalArgumentException If the value could not be converted
+     * @throws UnsupportedOperationException If conversion to {@code type} is
+     * not supported
+     */
+    public <T> T as(Class<T> type) {
+        Object cfgValue = converted.get(type);
+        if (cfgValue == null) {
+            cfgValue = convert(value, type);
+            converted.putIfAbsent(type, cfgValue);
+        }
+        if (cfgValue instanceof TimeZone) {
+            // TimeZone is mutable and must not be shared between callers
+            cfgValue = ((TimeZone) cfgValue).clone();
+        }
+        return type.cast(cfgValue);
+    }
+
+    /**
+     * Converts a {@link String} to a given type. Supported types are
+     * {@link String}, {@link Integer}, {@link Long}, {@link Boolean},
+     * {@link URL}, {@link TimeZone}, {@link Locale} and enumerations.
+     *
+     * @param <T> Type to convert the value into
+     * @param value Value to convert
+     * @param type Type to convert the value into
+     * @return Converted value
+     * @throws IllegalArgumentException If the value could not be converted
+     * @throws UnsupportedOperationException If conversion to {@code type} is
+     * not supported
+     */
+    public static <T> T convert(String value, Class<T> type) {
+        Object cfgValue;
+        if (type == String.class) {
+            cfgValue = value;
+        } else if (type == Integer.class) {
+            cfgValue = Integer.valueOf(value);
+        } else if (type == Long.class) {
+            cfgValue = Long.valueOf(value);
+        } else if (type == Boolean.class) {
+            cfgValue = toBoolean(value);
+        } else if (type == URL.class) {
+            cfgValue = toUrl(value);
+        } else if (type == TimeZone.class) {
+            cfgValue = toTimeZone(value);
+        } else if (type == Locale.class) {
+            cfgValue = toLocale(value);
+        } else if (type.isEnum()) {
+            cfgValue = toEnum(value, type);
+        } else {
+            throw new UnsupportedOperationException("Convertion from String to " + type.getName() + " is not supported");
+        }
+        return type.cast(cfgValue);
+    }
+
+    private static Boolean toBoolean(String value) {
+        if (Boolean.TRUE.toString().equalsIgnoreCase(value)) {
+            return Boolean.TRUE;
+        } else if (Boolean.FALSE.toString().equalsIgnoreCase(value)) {
+            return Boolean.FALSE;
+        } else {
+            throw new IllegalArgumentException("[" + value + "] is not a valid boolean");
+        }
+    }
+
+    private static URL toUrl(String value) {
+        try {
+            return new URL(value);
+        } catch (MalformedURLException ex) {
+            throw new IllegalArgumentException("[" + value + "] is not a valid URL", ex);
+        }
+    }
+
+    private static TimeZone toTimeZone(String value) {
+        if (!TIME_ZONE_IDS.contains(value)) {
+            throw new IllegalArgumentException("[" + value + "] is not a valid time zone");
+        }
+        return TimeZone.getTimeZone(value);
+    }
+
+    private static Locale toLocale(String value) {
+        String[] parts = value.split(LOCALE_SEPARATOR, 3);
+        switch (parts.length) {
+            case 1:
+                return new Locale(parts[0]);
+            case 2:
+                return new Locale(parts[0], parts[1]);
+            default:
+                return new Locale(parts[0], parts[1], parts[2]);
+        }
+    }
+
+    private static <E extends Enum<E>> E toEnum(String value, Class<?> type) {
+        // Only invoked for enumerations, which are their own type argument
+        @SuppressWarnings("unchecked")
+        Class<E> enumType = (Class<E>) type;
+        return Enum.valueOf(enumType, value);
+    }
+
+    @Override
+    public String toString() {
+        return value;
+    }
+}
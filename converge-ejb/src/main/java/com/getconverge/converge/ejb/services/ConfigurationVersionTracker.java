@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2014 Converge Consulting Limited
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.getconverge.converge.ejb.services;
+
+import com.getconverge.converge.entities.ConfigurationKey;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tracks the versions of the persisted configurations observed by a single
+ * application server node. Comparing the versions last observed with the
+ * versions currently persisted reveals the configurations changed by other
+ * nodes, which must be invalidated in the local {@link ConfigurationCacheBean}.
+ * <p>
+ * A version is identified by the unique identifier of the persisted
+ * configuration as well as its version number, so that a configuration that
+ * was reset and customized again between two observations is detected even
+ * though its version number starts over.
+ *
+ * @author Allan Lykke Christensen
+ */
+public final class ConfigurationVersionTracker {
+
+    private Map<ConfigurationKey, Version> versions = new EnumMap<>(ConfigurationKey.class);
+
+    /**
+     * Sets the versions observed when the configurations were loaded.
+     *
+     * @param observed Versions of the persisted configurations
+     */
+    public synchronized void reset(Map<ConfigurationKey, Version> observed) {
+        this.versions = copy(observed);
+    }
+
+    /**
+     * Compares the versions currently persisted with the versions last
+     * observed. Configurations that were added, updated or removed since the
+     * last observation are returned and the current versions become the last
+     * observed versions.
+     *
+     * @param observed Versions of the persisted configurations
+     * @return {@link Set} of configurations changed since the last observation
+     */
+    public synchronized Set<ConfigurationKey> update(Map<ConfigurationKey, Version> observed) {
+        Set<ConfigurationKey> changed = EnumSet.noneOf(ConfigurationKey.class);
+        for (Map.Entry<ConfigurationKey, Version> version : observed.entrySet()) {
+            Version previous = versions.get(version.getKey());
+            if (previous == null || !previous.equals(version.getValue())) {
+                changed.add(version.getKey());
+            }
+        }
+        for (ConfigurationKey key : versions.keySet()) {
+            if (!observed.containsKey(key)) {
+                changed.add(key);
+            }
+        }
+        this.versions = copy(observed);
+        return changed;
+    }
+
+    private static Map<ConfigurationKey, Version> copy(Map<ConfigurationKey, Version> observed) {
+        Map<ConfigurationKey, Version> copy = new EnumMap<>(ConfigurationKey.class);
+        copy.putAll(observed);
+        return copy;
+    }
+
+    /**
+     * Version of a persisted configuration, consisting of the unique
+     * identifier and the version number of the configuration.
+     */
+    public static final class Version {
+
+        private final Long id;
+
+        private final Long number;
+
+        /**
+         * Creates a new instance of {@link Version}.
+         *
+         * @param id Unique identifier of the persisted configuration
+         * @param number Version number of the persisted configuration
+         */
+        public Version(Long id, Long number) {
+            this.id = id;
+            this.number = number;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = 7;
+            hash = 53 * hash + (this.id != null ? this.id.hashCode() : 0);
+            hash = 53 * hash + (this.number != null ? this.number.hashCode() : 0);
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == null) {
+                return false;
+            }
+            if (getClass() != obj.getClass()) {
+                return false;
+            }
+            final Version other = (Version) obj;
+            if (this.id != other.id && (this.id == null || !this.id.equals(other.id))) {
+                return false;
+            }
+            if (this.number != other.number && (this.number == null || !this.number.equals(other.number))) {
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return "[id=" + id + "/version=" + number + "]";
+        }
+    }
+}
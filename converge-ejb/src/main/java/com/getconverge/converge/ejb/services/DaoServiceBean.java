@@ -16,18 +16,31 @@
  */
 package com.getconverge.converge.ejb.services;
 
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Member;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.LinkedList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import javax.ejb.LocalBean;
 import javax.ejb.Stateless;
 import javax.persistence.EntityManager;
+import javax.persistence.Lob;
 import javax.persistence.OptimisticLockException;
 import javax.persistence.PersistenceContext;
 import javax.persistence.Query;
+import javax.persistence.TypedQuery;
+import javax.persistence.metamodel.EntityType;
+import org.eclipse.persistence.jpa.JpaHelper;
+import org.eclipse.persistence.queries.CursoredStream;
 
 /**
  * Stateless session bean providing a data access object service for accessing
@@ -40,16 +53,67 @@ import javax.persistence.Query;
 public class DaoServiceBean {
 
     private static final String QUERY_FIND_ALL_BY_TYPE = "SELECT o FROM %1$s AS o";
-    private static final String QUERY_FIND_ALL_BY_TYPE_ORDERED_BY_FIELD_IN_DIRECTION = "SELECT o FROM %1$s AS o ORDER BY o.%2$s %3$s";
-    private static final String QUERY_COUNT_ROWS_BY_TYPE = "SELECT COUNT(o.%1$s) from %2$s o";
+    private static final String QUERY_FIND_ALL_BY_TYPE_ORDERED_BY_FIELD_IN_DIRECTION = "SELECT o FROM %1$s AS o ORDER BY o.%2$s %4$s";
+    private static final String QUERY_COUNT_ROWS_BY_TYPE = "SELECT COUNT(o.%2$s) from %1$s o";
+    private static final String QUERY_DELETE_BY_IDS = "DELETE FROM %1$s o WHERE o.%3$s IN :ids";
+    private static final String PARAM_IDS = "ids";
+    private static final String QUERY_FIND_FIRST_BY_ID = "SELECT o FROM %1$s o ORDER BY o.%3$s";
+    private static final String QUERY_FIND_NEXT_BY_ID = "SELECT o FROM %1$s o WHERE o.%3$s > :lastId ORDER BY o.%3$s";
+    private static final String PARAM_LAST_ID = "lastId";
+    private static final String QUERY_FIND_FIRST_PAGE = "SELECT o, o.%2$s FROM %1$s o ORDER BY o.%2$s %4$s, o.%3$s %4$s";
+    private static final String QUERY_FIND_NEXT_PAGE = "SELECT o, o.%2$s FROM %1$s o WHERE o.%2$s %5$s :lastValue OR (o.%2$s = :lastValue AND o.%3$s %5$s :lastId) ORDER BY o.%2$s %4$s, o.%3$s %4$s";
+    private static final String PARAM_LAST_VALUE = "lastValue";
+    private static final String QUERY_PROJECTION = "SELECT %2$s FROM %1$s o";
+    private static final String QUERY_PROJECTION_CONSTRUCTOR = "NEW %1$s(%2$s)";
+    private static final String HINT_CURSOR = "eclipselink.cursor";
+    private static final String HINT_CURSOR_PAGE_SIZE = "eclipselink.cursor.page-size";
+    private static final String HINT_READ_ONLY = "eclipselink.read-only";
+    private static final String HINT_BATCH = "eclipselink.batch";
+    private static final String HINT_BATCH_TYPE = "eclipselink.batch.type";
+    private static final String HINT_BATCH_TYPE_IN = "IN";
+    private static final String HINT_BATCH_SIZE = "eclipselink.batch.size";
+    private static final String QUERY_FIND_IDS_ORDERED = "SELECT o.%3$s FROM %1$s o ORDER BY o.%2$s %4$s, o.%3$s %4$s";
+    private static final String QUERY_FIND_BY_IDS_ORDERED = "SELECT o FROM %1$s o WHERE o.%3$s IN :ids ORDER BY o.%2$s %4$s, o.%3$s %4$s";
+    private static final String RELATION_PATH_SEPARATOR = ".";
     private static final String QUERY_SORTING_ASCENDING = "ASC";
     private static final String QUERY_SORTING_DESCENDING = "DESC";
 
+    /**
+     * JPQL generated from the query templates above. Each template is
+     * formatted with the entity name ({@code %1$s}), an attribute
+     * ({@code %2$s}), the identifier attribute ({@code %3$s}), the sorting
+     * direction ({@code %4$s}) and the matching comparison operator
+     * ({@code %5$s}). Only queries with attributes that exist in the metamodel
+     * are cached, which bounds the size of the cache. As the JPQL of a given
+     * query is always the same string, the persistence provider can reuse
+     * its parsed form.
+     */
+    private static final ConcurrentMap<List<Object>, String> JPQL_CACHE = new ConcurrentHashMap<>();
+
+    /**
+     * Default number of entities written by the bulk operations between each
+     * flush of the persistence context. It is only a flush and detach
+     * interval bounding the size of the persistence context. JDBC batch
+     * writing is not enabled, so each entity is still written with a
+     * statement of its own.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 100;
+
+    /**
+     * Maximum number of identifiers in a single bulk delete. Some databases
+     * limit the number of values in an {@code IN} expression.
+     */
+    private static final int MAX_IDS_PER_DELETE = 1000;
+
     @PersistenceContext
     private EntityManager em;
 
     /**
-     * Stores a given object in the data store.
+     * Stores a given object in the data store. The entity is written to the
+     * data store immediately and refreshed so that generated values and
+     * database defaults are available upon return. Use
+     * {@link #createDeferred(java.lang.Object)} if the generated values are not
+     * needed right away.
      *
      * @param <T> Type of entity to store
      * @param t Entity to store
@@ -62,6 +126,105 @@ public class DaoServiceBean {
         return t;
     }
 
+    /**
+     * Stores a given object in the data store without writing it immediately.
+     * The entity is written when the persistence context is flushed, at the
+     * latest when the transaction commits, which allows the persistence
+     * provider to batch the inserts. Values generated by the data store are
+     * not available until then.
+     *
+     * @param <T> Type of entity to store
+     * @param t Entity to store
+     * @return Entity managed by the persistence context
+     */
+    public <T> T createDeferred(T t) {
+        this.em.persist(t);
+        return t;
+    }
+
+    /**
+     * Stores a {@link Collection} of objects in the data store without
+     * writing them immediately.
+     *
+     * @param <T> Type of entities to store
+     * @param entities Entities to store
+     * @see #createDeferred(java.lang.Object)
+     */
+    public <T> void persistAll(Collection<T> entities) {
+        for (T t : entities) {
+            this.em.persist(t);
+        }
+    }
+
+    /**
+     * Stores a {@link Collection} of objects in the data store in batches. The
+     * persistence context is flushed after every {@code batchSize} entities and
+     * the written entities are detached to keep the persistence context small.
+     * The batch size is a flush interval and does not batch JDBC statements.
+     * The entities are therefore not managed when the method returns.
+     *
+     * @param <T> Type of entities to store
+     * @param entities Entities to store
+     * @param batchSize Number of entities to write per flush
+     * @throws IllegalArgumentException If {@code batchSize} is less than one
+     */
+    public <T> void persistAll(Collection<T> entities, int batchSize) {
+        checkBatchSize(batchSize);
+        List<T> batch = new ArrayList<>(batchSize);
+        for (T t : entities) {
+            this.em.persist(t);
+            batch.add(t);
+            if (batch.size() == batchSize) {
+                flushAndDetach(batch);
+            }
+        }
+        flushAndDetach(batch);
+    }
+
+    /**
+     * Updates a {@link Collection} of existing entities in the data store in
+     * batches of {@link #DEFAULT_BATCH_SIZE}.
+     *
+     * @param <T> Type of entities
+     * @param entities Entities to update
+     * @return Updated entities
+     * @throws OptimisticLockException If one of the entities is outdated
+     * @see #mergeAll(java.util.Collection, int)
+     */
+    public <T> List<T> mergeAll(Collection<T> entities) {
+        return mergeAll(entities, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Updates a {@link Collection} of existing entities in the data store in
+     * batches. The persistence context is flushed after every
+     * {@code batchSize} entities and the written entities are detached to keep
+     * the persistence context small. The returned entities are therefore not
+     * managed.
+     *
+     * @param <T> Type of entities
+     * @param entities Entities to update
+     * @param batchSize Number of entities to write per flush
+     * @return Updated entities in the order of {@code entities}
+     * @throws OptimisticLockException If one of the entities is outdated
+     * @throws IllegalArgumentException If {@code batchSize} is less than one
+     */
+    public <T> List<T> mergeAll(Collection<T> entities, int batchSize) {
+        checkBatchSize(batchSize);
+        List<T> merged = new ArrayList<>(entities.size());
+        List<T> batch = new ArrayList<>(batchSize);
+        for (T t : entities) {
+            T managed = this.em.merge(t);
+            merged.add(managed);
+            batch.add(managed);
+            if (batch.size() == batchSize) {
+                flushAndDetach(batch);
+            }
+        }
+        flushAndDetach(batch);
+        return merged;
+    }
+
     /**
      * Finds a given entity in the data store.
      *
@@ -84,6 +247,25 @@ public class DaoServiceBean {
         return entity;
     }
 
+    /**
+     * Finds a given entity in the data store without failing if the entity
+     * does not exist. Use this method rather than
+     * {@link #findById(java.lang.Class, java.lang.Object)} where a missing
+     * entity is an expected outcome.
+     *
+     * @param <T> Type of entity
+     * @param type Type of entity
+     * @param id Unique identifier of the entity
+     * @return Entity matching the unique identifier, or {@code null} if
+     * {@code id} is {@code null} or no match could be found
+     */
+    public <T> T find(Class<T> type, Object id) {
+        if (id == null) {
+            return null;
+        }
+        return this.em.find(type, id);
+    }
+
     /**
      * Updates an existing entity in the database.
      *
@@ -117,6 +299,32 @@ public class DaoServiceBean {
         }
     }
 
+    /**
+     * Removes the entities of a given type with the given unique identifiers
+     * from the data store. The entities are removed with a bulk delete
+     * statement without being loaded. Entities that are already managed by the
+     * persistence context are not affected and cascading removals are not
+     * performed. Identifiers that do not exist are ignored.
+     *
+     * @param type Type of entities
+     * @param ids Unique identifiers of the entities to remove
+     * @return Number of entities removed
+     */
+    public int deleteAll(Class<?> type, Collection<?> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        Query query = this.em.createQuery(getJpql(QUERY_DELETE_BY_IDS, type, null, true));
+
+        List<?> remaining = new ArrayList<>(ids);
+        int deleted = 0;
+        for (int i = 0; i < remaining.size(); i += MAX_IDS_PER_DELETE) {
+            List<?> chunk = remaining.subList(i, Math.min(i + MAX_IDS_PER_DELETE, remaining.size()));
+            deleted += query.setParameter(PARAM_IDS, chunk).executeUpdate();
+        }
+        return deleted;
+    }
+
     /**
      * Finds a {@link List} of entity returned by the given named query.
      *
@@ -179,6 +387,108 @@ public class DaoServiceBean {
         return query.getResultList();
     }
 
+    /**
+     * Finds a {@link List} of results returned by the given named query.
+     *
+     * @param <T> Type of result
+     * @param type Type of result
+     * @param namedQueryName Name of the query
+     * @return {@link List} of results returned by the given query
+     */
+    public <T> List<T> findWithNamedQuery(Class<T> type, String namedQueryName) {
+        return findWithNamedQuery(type, namedQueryName, Collections.<String, Object>emptyMap());
+    }
+
+    /**
+     * Finds a {@link List} of results returned by the given named query.
+     *
+     * @param <T> Type of result
+     * @param type Type of result
+     * @param namedQueryName Name of the query
+     * @param parameters Parameters of the query
+     * @return {@link List} of results returned by the given query
+     */
+    public <T> List<T> findWithNamedQuery(Class<T> type, String namedQueryName, Map<String, Object> parameters) {
+        return findWithNamedQuery(type, namedQueryName, parameters, 0, 0);
+    }
+
+    /**
+     * Finds a {@link List} of results returned by the given named query.
+     *
+     * @param <T> Type of result
+     * @param type Type of result
+     * @param namedQueryName Name of the query
+     * @param parameters Parameters of the query
+     * @param start First record of the result set
+     * @param resultLimit Maximum number of results, or {@code 0} for all
+     * results
+     * @return {@link List} of results returned by the given query
+     */
+    public <T> List<T> findWithNamedQuery(Class<T> type, String namedQueryName, Map<String, Object> parameters, int start, int resultLimit) {
+        TypedQuery<T> query = this.em.createNamedQuery(namedQueryName, type);
+        setFirstRecordToRetrieveFromQuery(start, query);
+        setMaxResultsFromQuery(resultLimit, query);
+        setQueryParameters(parameters.entrySet(), query);
+        return query.getResultList();
+    }
+
+    /**
+     * Finds a {@link List} of entities returned by the given named query for
+     * reading only. The entities are not registered in the persistence
+     * context, so they are neither copied nor checked for changes upon flush.
+     * The entities may be shared with other readers and must not be modified;
+     * changes are not stored.
+     *
+     * @param <T> Type of entity
+     * @param type Type of entity
+     * @param namedQueryName Name of the query
+     * @param parameters Parameters of the query
+     * @return {@link List} of read-only entities returned by the given query
+     */
+    public <T> List<T> findWithNamedQueryReadOnly(Class<T> type, String namedQueryName, Map<String, Object> parameters) {
+        return findWithNamedQueryReadOnly(type, namedQueryName, parameters, 0, 0);
+    }
+
+    /**
+     * Finds a {@link List} of entities returned by the given named query for
+     * reading only.
+     *
+     * @param <T> Type of entity
+     * @param type Type of entity
+     * @param namedQueryName Name of the query
+     * @param parameters Parameters of the query
+     * @param start First record of the result set
+     * @param resultLimit Maximum number of results, or {@code 0} for all
+     * results
+     * @return {@link List} of read-only entities returned by the given query
+     * @see #findWithNamedQueryReadOnly(java.lang.Class, java.lang.String,
+     * java.util.Map)
+     */
+    public <T> List<T> findWithNamedQueryReadOnly(Class<T> type, String namedQueryName, Map<String, Object> parameters, int start, int resultLimit) {
+        TypedQuery<T> query = this.em.createNamedQuery(namedQueryName, type);
+        query.setHint(HINT_READ_ONLY, Boolean.TRUE);
+        setFirstRecordToRetrieveFromQuery(start, query);
+        setMaxResultsFromQuery(resultLimit, query);
+        setQueryParameters(parameters.entrySet(), query);
+        return query.getResultList();
+    }
+
+    /**
+     * Finds the first result returned by the given named query. Only a single
+     * row is retrieved from the data store.
+     *
+     * @param <T> Type of result
+     * @param type Type of result
+     * @param namedQueryName Name of the query
+     * @param parameters Parameters of the query
+     * @return First result returned by the given query, or {@code null} if the
+     * query did not return any results
+     */
+    public <T> T findFirstWithNamedQuery(Class<T> type, String namedQueryName, Map<String, Object> parameters) {
+        List<T> results = findWithNamedQuery(type, namedQueryName, parameters, 0, 1);
+        return results.isEmpty() ? null : results.get(0);
+    }
+
     /**
      * Finds a single entity returned by the given named query.
      *
@@ -190,13 +500,12 @@ public class DaoServiceBean {
      * @throws DataNotFoundException If an entity could not be found
      */
     public <T> T findObjectWithNamedQuery(Class<T> type, String namedQueryName, QueryBuilder queryBuilder) throws DataNotFoundException {
-        @SuppressWarnings("unchecked")
-        List<T> results = findWithNamedQuery(namedQueryName, queryBuilder.parameters(), 0);
+        T result = findFirstWithNamedQuery(type, namedQueryName, queryBuilder.parameters());
 
-        if (results.isEmpty()) {
+        if (result == null) {
             throw new DataNotFoundException("Not found");
         } else {
-            return results.iterator().next();
+            return result;
         }
     }
 
@@ -225,8 +534,8 @@ public class DaoServiceBean {
      * @return {@link List} of all entities of the given type
      */
     public <T> List<T> findAll(Class<T> type) {
-        String query = String.format(QUERY_FIND_ALL_BY_TYPE, type.getSimpleName());
-        return new LinkedList(this.em.createQuery(query).getResultList());
+        String query = getJpql(QUERY_FIND_ALL_BY_TYPE, type, null, true);
+        return this.em.createQuery(query, type).getResultList();
     }
 
     /**
@@ -239,10 +548,12 @@ public class DaoServiceBean {
      * @param asc Sorting direction
      * @return {@link List} of all entities of the given type sorted by the
      * given field in the given direction
+     * @throws IllegalArgumentException If {@code orderBy} is not a field of
+     * the entity
      */
     public <T> List<T> findAll(Class<T> type, String orderBy, boolean asc) {
-        String query = String.format(QUERY_FIND_ALL_BY_TYPE_ORDERED_BY_FIELD_IN_DIRECTION, type.getSimpleName(), orderBy, getSortingDirection(asc));
-        return new LinkedList(this.em.createQuery(query).getResultList());
+        String query = getJpql(QUERY_FIND_ALL_BY_TYPE_ORDERED_BY_FIELD_IN_DIRECTION, type, orderBy, asc);
+        return this.em.createQuery(query, type).getResultList();
     }
 
     /**
@@ -255,13 +566,16 @@ public class DaoServiceBean {
      * @return {@link List} of entities of the given type in the given range
      */
     public <T> List<T> findAll(Class<T> type, int start, int resultLimit) {
-        String query = String.format(QUERY_FIND_ALL_BY_TYPE, type.getSimpleName());
-        return new LinkedList(this.em.createQuery(query).setFirstResult(start).setMaxResults(resultLimit).getResultList());
+        String query = getJpql(QUERY_FIND_ALL_BY_TYPE, type, null, true);
+        return this.em.createQuery(query, type).setFirstResult(start).setMaxResults(resultLimit).getResultList();
     }
 
     /**
      * Finds a range of entities of a given type in a given range sorted by a
-     * given field in a given direction.
+     * given field in a given direction. The cost of retrieving a range grows
+     * with {@code start}; use {@link #findPage(java.lang.Class,
+     * java.lang.String, boolean, int, KeysetPage.Token)} for paging deep into
+     * large tables.
      *
      * @param <T> Type of entity
      * @param type Type of entity
@@ -271,10 +585,276 @@ public class DaoServiceBean {
      * @param asc Sorting direction
      * @return {@link List} of entities of the given type in the given range
      * sorted by the given field in the given direction
+     * @throws IllegalArgumentException If {@code orderBy} is not a field of
+     * the entity
      */
     public <T> List<T> findAll(Class<T> type, int start, int resultLimit, String orderBy, boolean asc) {
-        String query = String.format(QUERY_FIND_ALL_BY_TYPE_ORDERED_BY_FIELD_IN_DIRECTION, type.getSimpleName(), orderBy, getSortingDirection(asc));
-        return new LinkedList(this.em.createQuery(query).setFirstResult(start).setMaxResults(resultLimit).getResultList());
+        String query = getJpql(QUERY_FIND_ALL_BY_TYPE_ORDERED_BY_FIELD_IN_DIRECTION, type, orderBy, asc);
+        return this.em.createQuery(query, type).setFirstResult(start).setMaxResults(resultLimit).getResultList();
+    }
+
+    /**
+     * Finds all the entities of a given type for reading only. The entities
+     * are not registered in the persistence context, so they are neither
+     * copied nor checked for changes upon flush. The entities may be shared
+     * with other readers and must not be modified; changes are not stored.
+     *
+     * @param <T> Type of entity
+     * @param type Type of entity
+     * @return {@link List} of all entities of the given type
+     */
+    public <T> List<T> findAllReadOnly(Class<T> type) {
+        String query = getJpql(QUERY_FIND_ALL_BY_TYPE, type, null, true);
+        return this.em.createQuery(query, type).setHint(HINT_READ_ONLY, Boolean.TRUE).getResultList();
+    }
+
+    /**
+     * Finds a range of entities of a given type sorted by a given field in a
+     * given direction for reading only.
+     *
+     * @param <T> Type of entity
+     * @param type Type of entity
+     * @param start First entity to retrieve
+     * @param resultLimit Number of entities to retrieve
+     * @param orderBy Field to sort by
+     * @param asc Sorting direction
+     * @return {@link List} of entities of the given type in the given range
+     * sorted by the given field in the given direction
+     * @throws IllegalArgumentException If {@code orderBy} is not a field of
+     * the entity
+     * @see #findAllReadOnly(java.lang.Class)
+     */
+    public <T> List<T> findAllReadOnly(Class<T> type, int start, int resultLimit, String orderBy, boolean asc) {
+        String query = getJpql(QUERY_FIND_ALL_BY_TYPE_ORDERED_BY_FIELD_IN_DIRECTION, type, orderBy, asc);
+        return this.em.createQuery(query, type).setHint(HINT_READ_ONLY, Boolean.TRUE)
+                .setFirstResult(start).setMaxResults(resultLimit).getResultList();
+    }
+
+    /**
+     * Finds a range of entities of a given type sorted by a given field in a
+     * given direction together with the given relations. The range is found
+     * by first retrieving the unique identifiers of the entities in the range,
+     * and then the entities themselves. The relations are batch read using
+     * {@code IN} lists upon first access, so a page of entities with its
+     * relations is loaded with one query per relation regardless of the number
+     * of entities on the page.
+     *
+     * @param <T> Type of entity
+     * @param type Type of entity
+     * @param start First entity to retrieve
+     * @param resultLimit Number of entities to retrieve
+     * @param orderBy Field to sort by
+     * @param asc Sorting direction
+     * @param relations Relations to load, e.g. {@code userRoles} or
+     * {@code userRoles.permissions} for nested relations
+     * @return {@link List} of entities of the given type in the given range
+     * sorted by the given field in the given direction
+     * @throws IllegalArgumentException If {@code orderBy} is not a field of
+     * the entity or a relation does not start with an attribute of the entity
+     */
+    public <T> List<T> findAllWithRelations(Class<T> type, int start, int resultLimit, String orderBy, boolean asc, String... relations) {
+        EntityType<T> entityType = this.em.getMetamodel().entity(type);
+        for (String relation : relations) {
+            int separator = relation.indexOf(RELATION_PATH_SEPARATOR);
+            // Throws IllegalArgumentException if the attribute does not exist
+            entityType.getAttribute(separator < 0 ? relation : relation.substring(0, separator));
+        }
+
+        List<?> ids = this.em.createQuery(getJpql(QUERY_FIND_IDS_ORDERED, type, orderBy, asc))
+                .setFirstResult(start).setMaxResults(resultLimit).getResultList();
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        TypedQuery<T> query = this.em.createQuery(getJpql(QUERY_FIND_BY_IDS_ORDERED, type, orderBy, asc), type)
+                .setParameter(PARAM_IDS, ids);
+        query.setHint(HINT_BATCH_TYPE, HINT_BATCH_TYPE_IN);
+        // Read the relations of the whole page in one batch
+        query.setHint(HINT_BATCH_SIZE, ids.size());
+        for (String relation : relations) {
+            query.setHint(HINT_BATCH, "o." + relation);
+        }
+        return query.getResultList();
+    }
+
+    /**
+     * Finds the values of selected attributes of all the entities of a given
+     * type. Only the selected attributes are retrieved from the data store
+     * and the results are not managed by the persistence context. If
+     * {@code resultType} is {@code Object[]} each result is an array of the
+     * attribute values, otherwise each result is constructed by passing the
+     * attribute values to a public constructor of {@code resultType} taking
+     * the attribute values in the given order.
+     *
+     * @param <T> Type of result
+     * @param type Type of entity
+     * @param resultType Type of result
+     * @param attributes Attributes of the entity to retrieve
+     * @return {@link List} of results, one for each entity
+     * @throws IllegalArgumentException If no attributes were given or one of
+     * the attributes is not a field of the entity
+     */
+    public <T> List<T> findProjection(Class<?> type, Class<T> resultType, String... attributes) {
+        if (attributes.length == 0) {
+            throw new IllegalArgumentException("At least one attribute must be selected");
+        }
+        List<Object> cacheKey = Arrays.<Object>asList(QUERY_PROJECTION, type, resultType, Arrays.asList(attributes));
+        String jpql = JPQL_CACHE.get(cacheKey);
+        if (jpql == null) {
+            EntityType<?> entityType = this.em.getMetamodel().entity(type);
+            StringBuilder selection = new StringBuilder();
+            for (String attribute : attributes) {
+                // Throws IllegalArgumentException if the attribute does not exist
+                entityType.getSingularAttribute(attribute);
+                if (selection.length() > 0) {
+                    selection.append(", ");
+                }
+                selection.append("o.").append(attribute);
+            }
+            String select = selection.toString();
+            if (resultType != Object[].class) {
+                select = String.format(QUERY_PROJECTION_CONSTRUCTOR, resultType.getName(), select);
+            }
+            jpql = String.format(QUERY_PROJECTION, entityType.getName(), select);
+            JPQL_CACHE.putIfAbsent(cacheKey, jpql);
+        }
+        if (resultType == Object[].class && attributes.length == 1) {
+            // A single selected attribute is returned as the value itself
+            List<?> values = this.em.createQuery(jpql).getResultList();
+            List<T> results = new ArrayList<>(values.size());
+            for (Object value : values) {
+                results.add(resultType.cast(new Object[]{value}));
+            }
+            return results;
+        }
+        return this.em.createQuery(jpql, resultType).getResultList();
+    }
+
+    /**
+     * Finds a page of entities of a given type sorted by a given field in a
+     * given direction using keyset pagination. Rather than skipping a number
+     * of rows, the page starts right after the position of the last entity of
+     * the previous page, so retrieving a page costs the same regardless of
+     * how deep into the result it is. Entities with the same value in the
+     * sorted field are ordered by their unique identifier. The sorted field
+     * must not be {@code null} for any of the entities and cannot be a large
+     * object ({@link Lob}), which databases cannot sort.
+     *
+     * @param <T> Type of entity
+     * @param type Type of entity
+     * @param orderBy Field to sort by
+     * @param asc Sorting direction
+     * @param resultLimit Maximum number of entities on the page
+     * @param after Position of the page as returned by
+     * {@link KeysetPage#getNext()}, or {@code null} to retrieve the first page
+     * @return Page of entities and the position of the next page
+     * @throws IllegalArgumentException If {@code resultLimit} is less than one
+     * or {@code orderBy} is not a field of the entity or is a large object
+     */
+    public <T> KeysetPage<T> findPage(Class<T> type, String orderBy, boolean asc, int resultLimit, KeysetPage.Token after) {
+        checkBatchSize(resultLimit);
+        checkSortable(type, orderBy);
+        Query query;
+        if (after == null) {
+            query = this.em.createQuery(getJpql(QUERY_FIND_FIRST_PAGE, type, orderBy, asc));
+        } else {
+            query = this.em.createQuery(getJpql(QUERY_FIND_NEXT_PAGE, type, orderBy, asc))
+                    .setParameter(PARAM_LAST_VALUE, after.getSortValue())
+                    .setParameter(PARAM_LAST_ID, after.getId());
+        }
+
+        // One extra row is retrieved to determine if there is a next page
+        @SuppressWarnings("unchecked")
+        List<Object[]> rows = query.setMaxResults(resultLimit + 1).getResultList();
+        boolean hasNext = rows.size() > resultLimit;
+        int size = Math.min(rows.size(), resultLimit);
+        List<T> results = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            results.add(type.cast(rows.get(i)[0]));
+        }
+
+        KeysetPage.Token next = null;
+        if (hasNext) {
+            Object[] last = rows.get(size - 1);
+            next = new KeysetPage.Token(last[1], this.em.getEntityManagerFactory().getPersistenceUnitUtil().getIdentifier(last[0]));
+        }
+        return new KeysetPage<>(results, next);
+    }
+
+    /**
+     * Passes all the entities of a given type to a {@link ResultHandler}
+     * without loading them all into memory. The entities are loaded in pages
+     * of {@code fetchSize} entities ordered by their unique identifier, where
+     * each page continues after the last identifier of the previous page.
+     * Changes made to the entities by the handler are flushed to the data
+     * store at the end of each page, after which the entities of the page are
+     * detached. All pages are loaded within the invocation of this method, so
+     * the memory used is bounded by the page size regardless of the number of
+     * entities.
+     *
+     * @param <T> Type of entity
+     * @param type Type of entity
+     * @param fetchSize Number of entities to load per page
+     * @param handler Handler receiving each entity
+     * @return Number of entities handled
+     * @throws IllegalArgumentException If {@code fetchSize} is less than one
+     */
+    public <T> long forEach(Class<T> type, int fetchSize, ResultHandler<? super T> handler) {
+        checkBatchSize(fetchSize);
+        KeysetIterator<T> results = new KeysetIterator<>(type, fetchSize);
+        long count = 0;
+        while (results.hasNext()) {
+            handler.handle(results.next());
+            count++;
+            if (count % fetchSize == 0) {
+                this.em.flush();
+            }
+        }
+        this.em.flush();
+        return count;
+    }
+
+    /**
+     * Passes the results of a named query to a {@link ResultHandler} using a
+     * database cursor, without loading all the results into memory. Changes
+     * made to the entities by the handler are flushed to the data store for
+     * every {@code fetchSize} results, after which the entities are detached.
+     * The query may return entities, scalars, rows of several columns or
+     * constructor results.
+     *
+     * @param namedQueryName Name of the query
+     * @param parameters Parameters of the query
+     * @param fetchSize Number of results to fetch from the cursor at a time
+     * @param handler Handler receiving each result
+     * @return Number of results handled
+     * @throws IllegalArgumentException If {@code fetchSize} is less than one
+     */
+    public long forEachWithNamedQuery(String namedQueryName, Map<String, Object> parameters, int fetchSize, ResultHandler<Object> handler) {
+        checkBatchSize(fetchSize);
+        Query query = this.em.createNamedQuery(namedQueryName);
+        setQueryParameters(parameters.entrySet(), query);
+        query.setHint(HINT_CURSOR, Boolean.TRUE);
+        query.setHint(HINT_CURSOR_PAGE_SIZE, fetchSize);
+
+        CursoredStream cursor = (CursoredStream) query.getSingleResult();
+        List<Object> page = new ArrayList<>(fetchSize);
+        long count = 0;
+        try {
+            while (cursor.hasNext()) {
+                Object result = cursor.next();
+                handler.handle(result);
+                page.add(result);
+                count++;
+                if (page.size() == fetchSize) {
+                    flushAndDetach(page);
+                    cursor.clear();
+                }
+            }
+            flushAndDetach(page);
+        } finally {
+            cursor.close();
+        }
+        return count;
     }
 
     /**
@@ -323,12 +903,61 @@ public class DaoServiceBean {
      * @param type Type of entity
      * @param field Field to count in the entity
      * @return Number of entities of the given type
+     * @throws IllegalArgumentException If {@code field} is not a field of the
+     * entity
      */
     public <T> Number count(Class<T> type, String field) {
-        String query = String.format(QUERY_COUNT_ROWS_BY_TYPE, field, type.getSimpleName());
+        String query = getJpql(QUERY_COUNT_ROWS_BY_TYPE, type, field, true);
         return (Number) this.em.createQuery(query).getSingleResult();
     }
 
+    /**
+     * Determines if an entity is held in the shared cache of the persistence
+     * unit. Only entities annotated with {@link javax.persistence.Cacheable}
+     * are held in the shared cache.
+     *
+     * @param type Type of entity
+     * @param id Unique identifier of the entity
+     * @return {@code true} if the entity is held in the shared cache,
+     * otherwise {@code false}
+     */
+    public boolean isCached(Class<?> type, Object id) {
+        return this.em.getEntityManagerFactory().getCache().contains(type, id);
+    }
+
+    /**
+     * Removes an entity from the shared cache of the persistence unit. The
+     * entity is read from the data store upon the next lookup.
+     *
+     * @param type Type of entity
+     * @param id Unique identifier of the entity
+     */
+    public void evict(Class<?> type, Object id) {
+        this.em.getEntityManagerFactory().getCache().evict(type, id);
+    }
+
+    /**
+     * Removes all entities of a given type from the shared cache of the
+     * persistence unit.
+     *
+     * @param type Type of entity
+     */
+    public void evict(Class<?> type) {
+        this.em.getEntityManagerFactory().getCache().evict(type);
+    }
+
+    /**
+     * Removes the cached results of a named query. Query results are cached
+     * for named queries with the {@code eclipselink.query-results-cache} hint.
+     * The cached results are not updated when entities are created, so the
+     * results must be removed when an entity matching the query is created.
+     *
+     * @param namedQueryName Name of the query
+     */
+    public void evictQueryResults(String namedQueryName) {
+        JpaHelper.getServerSession(this.em.getEntityManagerFactory()).getIdentityMapAccessor().clearQueryCache(namedQueryName);
+    }
+
     /**
      * Obtain the {@link EntityManager} from the persistence framework.
      *
@@ -354,6 +983,106 @@ public class DaoServiceBean {
         return ascending ? QUERY_SORTING_ASCENDING : QUERY_SORTING_DESCENDING;
     }
 
+    /**
+     * Gets the JPQL of a query template for a given entity type. The JPQL is
+     * generated upon the first request and cached for subsequent requests.
+     *
+     * @param template Query template
+     * @param type Type of entity
+     * @param attribute Attribute of the entity to use in the query, or
+     * {@code null} if the template does not use an attribute
+     * @param asc Sorting direction, where {@code true} is ascending
+     * @return JPQL of the query
+     * @throws IllegalArgumentException If {@code type} is not an entity or
+     * {@code attribute} is not a single-valued attribute of the entity
+     */
+    private String getJpql(String template, Class<?> type, String attribute, boolean asc) {
+        List<Object> cacheKey = Arrays.<Object>asList(template, type, attribute, asc);
+        String jpql = JPQL_CACHE.get(cacheKey);
+        if (jpql == null) {
+            EntityType<?> entityType = this.em.getMetamodel().entity(type);
+            if (attribute != null) {
+                // Throws IllegalArgumentException if the attribute does not exist
+                entityType.getSingularAttribute(attribute);
+            }
+            String idAttribute = entityType.getId(entityType.getIdType().getJavaType()).getName();
+            jpql = String.format(template, entityType.getName(), attribute, idAttribute, getSortingDirection(asc), asc ? ">" : "<");
+            JPQL_CACHE.putIfAbsent(cacheKey, jpql);
+        }
+        return jpql;
+    }
+
+    private <T> void detach(List<T> entities) {
+        for (T t : entities) {
+            if (this.em.contains(t)) {
+                this.em.detach(t);
+            }
+        }
+    }
+
+    /**
+     * Checks that an attribute can be used for sorting entities in the
+     * database. Large objects cannot be sorted by the database.
+     *
+     * @param type Type of entity
+     * @param attribute Attribute to sort by
+     * @throws IllegalArgumentException If {@code attribute} is not a field of
+     * the entity or is a large object
+     */
+    private void checkSortable(Class<?> type, String attribute) {
+        Member member = this.em.getMetamodel().entity(type).getSingularAttribute(attribute).getJavaMember();
+        if (member instanceof AnnotatedElement && ((AnnotatedElement) member).isAnnotationPresent(Lob.class)) {
+            throw new IllegalArgumentException(attribute + " of " + type.getName() + " is a large object and cannot be sorted");
+        }
+    }
+
+    private void checkBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1");
+        }
+    }
+
+    private <T> void flushAndDetach(List<T> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        this.em.flush();
+        for (T t : batch) {
+            detachEntities(t);
+        }
+        batch.clear();
+    }
+
+    /**
+     * Detaches a result from the persistence context if it is an entity.
+     * Scalar and constructor results are not held by the persistence context
+     * and are left as they are, while the entities in a result consisting of
+     * several columns are detached one by one.
+     *
+     * @param result Result to detach
+     */
+    private void detachEntities(Object result) {
+        if (result instanceof Object[]) {
+            for (Object column : (Object[]) result) {
+                detachEntities(column);
+            }
+        } else if (isEntity(result)) {
+            this.em.detach(result);
+        }
+    }
+
+    private boolean isEntity(Object result) {
+        if (result == null) {
+            return false;
+        }
+        for (EntityType<?> entity : this.em.getMetamodel().getEntities()) {
+            if (entity.getJavaType().isInstance(result)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private void setQueryParameters(Set<Entry<String, Object>> parameters, Query query) {
         for (Entry<String, Object> param : parameters) {
             query.setParameter(param.getKey(), param.getValue());
@@ -372,4 +1101,72 @@ public class DaoServiceBean {
         }
     }
 
+    /**
+     * {@link Iterator} loading the entities of a given type in pages ordered
+     * by the unique identifier of the entities. Each page is loaded by
+     * seeking past the last identifier of the previous page.
+     *
+     * @param <T> Type of entity
+     */
+    private class KeysetIterator<T> implements Iterator<T> {
+
+        private final Class<T> type;
+        private final int fetchSize;
+        private final String firstQuery;
+        private final String nextQuery;
+        private List<T> page = Collections.emptyList();
+        private int position = 0;
+        private Object lastId = null;
+        private boolean exhausted = false;
+
+        KeysetIterator(Class<T> type, int fetchSize) {
+            this.type = type;
+            this.fetchSize = fetchSize;
+            this.firstQuery = getJpql(QUERY_FIND_FIRST_BY_ID, type, null, true);
+            this.nextQuery = getJpql(QUERY_FIND_NEXT_BY_ID, type, null, true);
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (position < page.size()) {
+                return true;
+            }
+            if (exhausted) {
+                return false;
+            }
+            loadNextPage();
+            return position < page.size();
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return page.get(position++);
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("Entities cannot be removed while iterating");
+        }
+
+        private void loadNextPage() {
+            detach(page);
+            TypedQuery<T> query;
+            if (lastId == null) {
+                query = em.createQuery(firstQuery, type);
+            } else {
+                query = em.createQuery(nextQuery, type).setParameter(PARAM_LAST_ID, lastId);
+            }
+            page = query.setMaxResults(fetchSize).getResultList();
+            position = 0;
+            if (page.size() < fetchSize) {
+                exhausted = true;
+            }
+            if (!page.isEmpty()) {
+                lastId = em.getEntityManagerFactory().getPersistenceUnitUtil().getIdentifier(page.get(page.size() - 1));
+            }
+        }
+    }
 }
@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2014 Converge Consulting Limited
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.getconverge.converge.ejb.services;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Page of entities retrieved using keyset pagination. The page contains a
+ * {@link Token} pointing to the position after the last entity of the page,
+ * which is used for retrieving the next page.
+ *
+ * @param <T> Type of entity
+ * @author Allan Lykke Christensen
+ * @see DaoServiceBean#findPage(java.lang.Class, java.lang.String, boolean,
+ * int, KeysetPage.Token)
+ */
+public class KeysetPage<T> implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final List<T> results;
+
+    private final Token next;
+
+    /**
+     * Creates a new instance of {@link KeysetPage}.
+     *
+     * @param results Entities on the page
+     * @param next Position of the next page, or {@code null} if this is the
+     * last page
+     */
+    public KeysetPage(List<T> results, Token next) {
+        this.results = results;
+        this.next = next;
+    }
+
+    /**
+     * Gets the entities on the page.
+     *
+     * @return {@link List} of entities on the page
+     */
+    public List<T> getResults() {
+        return results;
+    }
+
+    /**
+     * Gets the position of the next page.
+     *
+     * @return {@link Token} for retrieving the next page, or {@code null} if
+     * this is the last page
+     */
+    public Token getNext() {
+        return next;
+    }
+
+    /**
+     * Determines if there is a page following this page.
+     *
+     * @return {@code true} if there is a page following this page, otherwise
+     * {@code false}
+     */
+    public boolean hasNext() {
+        return next != null;
+    }
+
+    /**
+     * Position in a sorted list of entities. The position is given by the
+     * value of the sorted field and the unique identifier of the last entity
+     * seen, the latter making the position unique when several entities have
+     * the same value in the sorted field.
+     */
+    public static final class Token implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Object sortValue;
+
+        private final Object id;
+
+        /**
+         * Creates a new instance of {@link Token}.
+         *
+         * @param sortValue Value of the sorted field of the last entity seen
+         * @param id Unique identifier of the last entity seen
+         */
+        public Token(Object sortValue, Object id) {
+            this.sortValue = sortValue;
+            this.id = id;
+        }
+
+        /**
+         * Gets the value of the sorted field of the last entity seen.
+         *
+         * @return Value of the sorted field of the last entity seen
+         */
+        public Object getSortValue() {
+            return sortValue;
+        }
+
+        /**
+         * Gets the unique identifier of the last entity seen.
+         *
+         * @return Unique identifier of the last entity seen
+         */
+        public Object getId() {
+            return id;
+        }
+
+        @Override
+        public String toString() {
+            return "[" + sortValue + ", " + id + "]";
+        }
+    }
+}
@@ -0,0 +1,370 @@
+/*
+ * Copyright (C) 2014 Converge Consulting Limited
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.getconverge.converge.ejb.services;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Cache holding a bounded number of values for a limited time. When the cache
+ * is full, the least recently used value is evicted. Values are loaded upon
+ * lookup using a {@link Loader}, and concurrent lookups of the same key
+ * missing the cache share a single load. Keys for which no value exists can
+ * optionally be cached as well, for a separate, usually shorter, time.
+ * <p>
+ * The cache counts hits, misses, evictions and the time spent loading values.
+ *
+ * @param <K> Type of the keys
+ * @param <V> Type of the values
+ * @author Allan Lykke Christensen
+ */
+public class LruCache<K, V> {
+
+    private final int maximumSize;
+
+    private final long timeToLive;
+
+    private final long negativeTimeToLive;
+
+    private final LinkedHashMap<K, CachedValue<V>> entries;
+
+    private final ConcurrentMap<K, FutureTask<V>> loading = new ConcurrentHashMap<>();
+
+    /**
+     * Incremented upon each invalidation so that values loaded before an
+     * invalidation are not put into the cache after it. Guarded by the cache.
+     */
+    private long generation;
+
+    private long hits;
+
+    private long misses;
+
+    private long evictions;
+
+    private long expirations;
+
+    private long loads;
+
+    private long totalLoadTime;
+
+    /**
+     * Creates a new instance of {@link LruCache}.
+     *
+     * @param maximumSize Maximum number of keys held by the cache
+     * @param timeToLive Number of milliseconds a value is held by the cache
+     * @param negativeTimeToLive Number of milliseconds a key without a value is
+     * held by the cache. Keys without a value are not cached if {@code 0}
+     * @throws IllegalArgumentException If {@code maximumSize} is less than
+     * {@code 1}, or a time to live is negative
+     */
+    public LruCache(int maximumSize, long timeToLive, long negativeTimeToLive) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("Maximum size must be at least 1. " + maximumSize + " is not a valid maximum size");
+        }
+        if (timeToLive < 0 || negativeTimeToLive < 0) {
+            throw new IllegalArgumentException("Time to live cannot be negative");
+        }
+        this.maximumSize = maximumSize;
+        this.timeToLive = timeToLive;
+        this.negativeTimeToLive = negativeTimeToLive;
+        this.entries = new LinkedHashMap<K, CachedValue<V>>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, CachedValue<V>> eldest) {
+                if (size() > LruCache.this.maximumSize) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Gets the value of a key. If the value is not held by the cache, the
+     * value is loaded using the given {@link Loader} and put into the cache.
+     * Concurrent lookups of a key that is being loaded wait for the load to
+     * complete rather than loading the value again.
+     *
+     * @param key Key of the value
+     * @param loader {@link Loader} used for loading the value if it is not
+     * held by the cache
+     * @return Value of the key, or {@code null} if the key has no value
+     */
+    public V get(final K key, final Loader<K, V> loader) {
+        long loadedGeneration;
+        synchronized (this) {
+            CachedValue<V> entry = entries.get(key);
+            if (entry != null) {
+                if (entry.expires > currentTimeMillis()) {
+                    hits++;
+                    return entry.value;
+                }
+                entries.remove(key);
+                expirations++;
+            }
+            misses++;
+            loadedGeneration = generation;
+        }
+
+        FutureTask<V> task = new FutureTask<>(new Callable<V>() {
+
+            @Override
+            public V call() throws Exception {
+                return loader.load(key);
+            }
+        });
+        FutureTask<V> existing = loading.putIfAbsent(key, task);
+        if (existing != null) {
+            return await(existing);
+        }
+
+        try {
+            long start = System.nanoTime();
+            task.run();
+            V value = await(task);
+            put(key, value, loadedGeneration, System.nanoTime() - start);
+            return value;
+        } finally {
+            loading.remove(key, task);
+        }
+    }
+
+    /**
+     * Removes a key from the cache.
+     *
+     * @param key Key to remove
+     */
+    public synchronized void invalidate(K key) {
+        generation++;
+        entries.remove(key);
+    }
+
+    /**
+     * Removes all keys from the cache.
+     */
+    public synchronized void invalidateAll() {
+        generation++;
+        entries.clear();
+    }
+
+    /**
+     * Removes the expired keys from the cache.
+     */
+    public synchronized void cleanUp() {
+        long now = currentTimeMillis();
+        for (Iterator<CachedValue<V>> i = entries.values().iterator(); i.hasNext();) {
+            if (i.next().expires <= now) {
+                i.remove();
+                expirations++;
+            }
+        }
+    }
+
+    /**
+     * Gets the number of keys held by the cache, including expired keys that
+     * were not yet removed.
+     *
+     * @return Number of keys held by the cache
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Gets the maximum number of keys held by the cache.
+     *
+     * @return Maximum number of keys held by the cache
+     */
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * Gets the number of lookups served by the cache, including lookups of
+     * keys known to have no value.
+     *
+     * @return Number of lookups served by the cache
+     */
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * Gets the number of lookups that were not served by the cache.
+     *
+     * @return Number of lookups that were not served by the cache
+     */
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * Gets the ratio of lookups served by the cache.
+     *
+     * @return Ratio between {@code 0} and {@code 1} of lookups served by the
+     * cache, or {@code 0} if no lookups were made
+     */
+    public synchronized double getHitRatio() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    /**
+     * Gets the number of keys evicted because the cache was full.
+     *
+     * @return Number of keys evicted because the cache was full
+     */
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    /**
+     * Gets the number of keys removed because they expired.
+     *
+     * @return Number of keys removed because they expired
+     */
+    public synchronized long getExpirationCount() {
+        return expirations;
+    }
+
+    /**
+     * Gets the number of values loaded using a {@link Loader}.
+     *
+     * @return Number of values loaded
+     */
+    public synchronized long getLoadCount() {
+        return loads;
+    }
+
+    /**
+     * Gets the average time spent loading a value.
+     *
+     * @return Average number of nanoseconds spent loading a value, or
+     * {@code 0} if no values were loaded
+     */
+    public synchronized long getAverageLoadTime() {
+        return loads == 0 ? 0 : totalLoadTime / loads;
+    }
+
+    /**
+     * Gets the current time. Overridden by tests.
+     *
+     * @return Current time in milliseconds
+     */
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * Puts a loaded value into the cache unless the cache was invalidated
+     * while loading. Keys without a value are only put into the cache if
+     * negative caching is enabled.
+     *
+     * @param key Key of the value
+     * @param value Loaded value, or {@code null} if the key has no value
+     * @param loadedGeneration Generation of the cache when loading started
+     * @param loadTime Number of nanoseconds spent loading the value
+     */
+    private synchronized void put(K key, V value, long loadedGeneration, long loadTime) {
+        loads++;
+        totalLoadTime += loadTime;
+        if (loadedGeneration != generation) {
+            return;
+        }
+        if (value != null) {
+            entries.put(key, new CachedValue<>(value, currentTimeMillis() + timeToLive));
+        } else if (negativeTimeToLive > 0) {
+            entries.put(key, new CachedValue<V>(null, currentTimeMillis() + negativeTimeToLive));
+        }
+    }
+
+    /**
+     * Waits for a value to be loaded.
+     *
+     * @param task Task loading the value
+     * @return Loaded value
+     */
+    private V await(FutureTask<V> task) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return task.get();
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                } catch (ExecutionException ex) {
+                    Throwable cause = ex.getCause();
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    }
+                    if (cause instanceof Error) {
+                        throw (Error) cause;
+                    }
+                    throw new IllegalStateException(cause);
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Loads the value of a key that is not held by the {@link LruCache}.
+     *
+     * @param <K> Type of the keys
+     * @param <V> Type of the values
+     */
+    public interface Loader<K, V> {
+
+        /**
+         * Loads the value of a key.
+         *
+         * @param key Key of the value
+         * @return Value of the key, or {@code null} if the key has no value
+         */
+        V load(K key);
+    }
+
+    /**
+     * Value held by the cache and the time when it expires.
+     *
+     * @param <V> Type of the value
+     */
+    private static final class CachedValue<V> {
+
+        private final V value;
+
+        private final long expires;
+
+        CachedValue(V value, long expires) {
+            this.value = value;
+            this.expires = expires;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2014 Converge Consulting Limited
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.getconverge.converge.ejb.services;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Index of the effective permissions of user accounts. Each permission is
+ * interned as a bit position the first time it is seen, and the effective
+ * permissions of a user account are held as a {@link BitSet} over these
+ * positions. Looking up whether a user account holds a permission is
+ * therefore a constant time operation regardless of the number of
+ * permissions and roles.
+ *
+ * @author Allan Lykke Christensen
+ */
+public final class PermissionIndex {
+
+    private final ConcurrentMap<Long, Integer> positions = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<Long, BitSet> userAccounts = new ConcurrentHashMap<>();
+
+    /**
+     * Sets the effective permissions of a user account.
+     *
+     * @param userAccountId Unique identifier of the user account
+     * @param permissionIds Unique identifiers of the permissions held by the
+     * user account, directly or through roles
+     */
+    public void put(Long userAccountId, Collection<Long> permissionIds) {
+        BitSet permissions = new BitSet();
+        for (Long permissionId : permissionIds) {
+            permissions.set(intern(permissionId));
+        }
+        // The BitSet is never modified once it is published
+        userAccounts.put(userAccountId, permissions);
+    }
+
+    /**
+     * Determines if the effective permissions of a user account are held in
+     * the index.
+     *
+     * @param userAccountId Unique identifier of the user account
+     * @return {@code true} if the effective permissions of the user account
+     * are held in the index, otherwise {@code false}
+     */
+    public boolean contains(Long userAccountId) {
+        return userAccounts.containsKey(userAccountId);
+    }
+
+    /**
+     * Determines if a user account holds a permission.
+     *
+     * @param userAccountId Unique identifier of the user account
+     * @param permissionId Unique identifier of the permission
+     * @return {@code true} if the user account holds the permission, or
+     * {@code false} if the user account does not hold the permission or the
+     * user account is not held in the index
+     */
+    public boolean hasPermission(Long userAccountId, Long permissionId) {
+        return Boolean.TRUE.equals(lookup(userAccountId, permissionId));
+    }
+
+    /**
+     * Determines if a user account holds a permission, distinguishing user
+     * accounts that are not held in the index. The effective permissions of
+     * the user account are read only once, so the answer is consistent even
+     * if the user account is removed from the index concurrently.
+     *
+     * @param userAccountId Unique identifier of the user account
+     * @param permissionId Unique identifier of the permission
+     * @return {@link Boolean#TRUE} if the user account holds the permission,
+     * {@link Boolean#FALSE} if the user account does not hold the permission,
+     * or {@code null} if the user account is not held in the index
+     */
+    public Boolean lookup(Long userAccountId, Long permissionId) {
+        BitSet permissions = userAccounts.get(userAccountId);
+        if (permissions == null) {
+            return null;
+        }
+        Integer position = positions.get(permissionId);
+        return position != null && permissions.get(position);
+    }
+
+    /**
+     * Removes the effective permissions of a user account from the index.
+     *
+     * @param userAccountId Unique identifier of the user account
+     */
+    public void remove(Long userAccountId) {
+        userAccounts.remove(userAccountId);
+    }
+
+    /**
+     * Removes the effective permissions of all user accounts from the index.
+     * Interned permissions are kept so that positions remain stable.
+     */
+    public void clear() {
+        userAccounts.clear();
+    }
+
+    /**
+     * Gets the number of user accounts held in the index.
+     *
+     * @return Number of user accounts held in the index
+     */
+    public int size() {
+        return userAccounts.size();
+    }
+
+    private int intern(Long permissionId) {
+        Integer position = positions.get(permissionId);
+        if (position == null) {
+            synchronized (positions) {
+                position = positions.get(permissionId);
+                if (position == null) {
+                    position = positions.size();
+                    positions.put(permissionId, position);
+                }
+            }
+        }
+        return position;
+    }
+}
@@ -0,0 +1,368 @@
+/*
+ * Copyright (C) 2014 Converge Consulting Limited
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.getconverge.converge.ejb.services;
+
+import com.getconverge.converge.entities.security.Permission;
+import com.getconverge.converge.entities.security.UserAccount;
+import com.getconverge.converge.entities.security.UserRole;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.EJB;
+import javax.ejb.LocalBean;
+import javax.ejb.Singleton;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+/**
+ * Singleton session bean answering whether a {@link UserAccount} holds a
+ * {@link Permission}, either granted directly or through a {@link UserRole}.
+ * The effective permissions of a user account are computed with two queries
+ * upon the first check and kept in a {@link PermissionIndex} until they are
+ * invalidated. The unique identifiers of permission strings are kept in memory
+ * as well, so that a check by permission string does not query the database
+ * once the permission has been resolved.
+ * <p>
+ * Permissions granted through {@link #grant(Long, Long)},
+ * {@link #revoke(Long, Long)}, {@link #grantToRole(Long, Long)} and
+ * {@link #revokeFromRole(Long, Long)} invalidate the affected user accounts.
+ * Services changing permission grants without using this bean must invalidate
+ * the affected user accounts themselves.
+ *
+ * @author Allan Lykke Christensen
+ */
+@Singleton
+@LocalBean
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class PermissionIndexBean {
+
+    @EJB
+    private DaoServiceBean daoService;
+
+    @Resource
+    private TransactionSynchronizationRegistry txRegistry;
+
+    private final PermissionIndex index = new PermissionIndex();
+
+    /**
+     * Unique identifiers of the permission strings resolved so far.
+     */
+    private final ConcurrentMap<String, Long> permissionIds = new ConcurrentHashMap<>();
+
+    /**
+     * Incremented upon each invalidation so that permissions loaded before an
+     * invalidation are not put into the index after it. Invalidations and
+     * puts are synchronized on the bean.
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * Determines if a {@link UserAccount} holds a {@link Permission}.
+     *
+     * @param userAccount {@link UserAccount} to check
+     * @param permission {@link Permission} to check
+     * @return {@code true} if the {@link UserAccount} holds the
+     * {@link Permission}, otherwise {@code false}
+     */
+    public boolean hasPermission(UserAccount userAccount, Permission permission) {
+        return hasPermission(userAccount.getId(), permission.getId());
+    }
+
+    /**
+     * Determines if a {@link UserAccount} holds a {@link Permission}.
+     *
+     * @param userAccountId Unique identifier of the {@link UserAccount}
+     * @param permission Permission string of the {@link Permission}
+     * @return {@code true} if the {@link UserAccount} holds the
+     * {@link Permission}, otherwise {@code false}. {@code false} is also
+     * returned if the {@link Permission} does not exist
+     */
+    public boolean hasPermission(Long userAccountId, String permission) {
+        Long permissionId = permissionIds.get(permission);
+        if (permissionId == null) {
+            permissionId = daoService.findFirstWithNamedQuery(Long.class, Permission.FIND_ID_BY_PERMISSION,
+                    QueryBuilder.with(Permission.PARAM_PERMISSION, permission).parameters());
+            if (permissionId == null) {
+                return false;
+            }
+            permissionIds.putIfAbsent(permission, permissionId);
+        }
+        return hasPermission(userAccountId, permissionId);
+    }
+
+    /**
+     * Determines if a {@link UserAccount} holds a {@link Permission}.
+     *
+     * @param userAccountId Unique identifier of the {@link UserAccount}
+     * @param permissionId Unique identifier of the {@link Permission}
+     * @return {@code true} if the {@link UserAccount} holds the
+     * {@link Permission}, otherwise {@code false}
+     */
+    public boolean hasPermission(Long userAccountId, Long permissionId) {
+        Boolean held = index.lookup(userAccountId, permissionId);
+        if (held != null) {
+            return held;
+        }
+        return load(userAccountId).contains(permissionId);
+    }
+
+    /**
+     * Grants a {@link Permission} directly to a {@link UserAccount}. The
+     * effective permissions of the user account are invalidated.
+     *
+     * @param userAccountId Unique identifier of the {@link UserAccount}
+     * @param permissionId Unique identifier of the {@link Permission}
+     * @return {@code true} if the {@link Permission} was granted, or
+     * {@code false} if the {@link UserAccount} already held the
+     * {@link Permission}
+     * @throws DataNotFoundException If the {@link UserAccount} or
+     * {@link Permission} does not exist
+     */
+    public boolean grant(Long userAccountId, Long permissionId) throws DataNotFoundException {
+        UserAccount userAccount = daoService.findById(UserAccount.class, userAccountId);
+        Permission permission = daoService.findById(Permission.class, permissionId);
+        if (!userAccount.getPermissions().add(permission)) {
+            return false;
+        }
+        invalidate(userAccountId);
+        return true;
+    }
+
+    /**
+     * Revokes a {@link Permission} granted directly to a {@link UserAccount}.
+     * The effective permissions of the user account are invalidated.
+     *
+     * @param userAccountId Unique identifier of the {@link UserAccount}
+     * @param permissionId Unique identifier of the {@link Permission}
+     * @return {@code true} if the {@link Permission} was revoked, or
+     * {@code false} if the {@link Permission} was not granted directly to the
+     * {@link UserAccount}
+     * @throws DataNotFoundException If the {@link UserAccount} or
+     * {@link Permission} does not exist
+     */
+    public boolean revoke(Long userAccountId, Long permissionId) throws DataNotFoundException {
+        UserAccount userAccount = daoService.findById(UserAccount.class, userAccountId);
+        Permission permission = daoService.findById(Permission.class, permissionId);
+        if (!userAccount.getPermissions().remove(permission)) {
+            return false;
+        }
+        invalidate(userAccountId);
+        return true;
+    }
+
+    /**
+     * Grants a {@link Permission} to a {@link UserRole}. The effective
+     * permissions of the members of the role are invalidated.
+     *
+     * @param userRoleId Unique identifier of the {@link UserRole}
+     * @param permissionId Unique identifier of the {@link Permission}
+     * @return {@code true} if the {@link Permission} was granted, or
+     * {@code false} if the {@link UserRole} already held the
+     * {@link Permission}
+     * @throws DataNotFoundException If the {@link UserRole} or
+     * {@link Permission} does not exist
+     */
+    public boolean grantToRole(Long userRoleId, Long permissionId) throws DataNotFoundException {
+        UserRole userRole = daoService.findById(UserRole.class, userRoleId);
+        Permission permission = daoService.findById(Permission.class, permissionId);
+        if (!userRole.getPermissions().add(permission)) {
+            return false;
+        }
+        permission.getUserRoles().add(userRole);
+        invalidate(userRole);
+        return true;
+    }
+
+    /**
+     * Revokes a {@link Permission} from a {@link UserRole}. The effective
+     * permissions of the members of the role are invalidated.
+     *
+     * @param userRoleId Unique identifier of the {@link UserRole}
+     * @param permissionId Unique identifier of the {@link Permission}
+     * @return {@code true} if the {@link Permission} was revoked, or
+     * {@code false} if the {@link UserRole} did not hold the
+     * {@link Permission}
+     * @throws DataNotFoundException If the {@link UserRole} or
+     * {@link Permission} does not exist
+     */
+    public boolean revokeFromRole(Long userRoleId, Long permissionId) throws DataNotFoundException {
+        UserRole userRole = daoService.findById(UserRole.class, userRoleId);
+        Permission permission = daoService.findById(Permission.class, permissionId);
+        if (!userRole.getPermissions().remove(permission)) {
+            return false;
+        }
+        permission.getUserRoles().remove(userRole);
+        invalidate(userRole);
+        return true;
+    }
+
+    /**
+     * Removes the effective permissions of a {@link UserAccount} from the
+     * index. Invoke when the permissions granted directly to the user account
+     * or its role memberships are changed. The user account is removed
+     * immediately and again upon completion of the current transaction, so
+     * that permissions read by a concurrent transaction before the change was
+     * committed do not remain in the index.
+     *
+     * @param userAccountId Unique identifier of the {@link UserAccount}
+     */
+    public void invalidate(final Long userAccountId) {
+        remove(userAccountId);
+        if (txRegistry.getTransactionStatus() == Status.STATUS_ACTIVE) {
+            txRegistry.registerInterposedSynchronization(new Synchronization() {
+
+                @Override
+                public void beforeCompletion() {
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    remove(userAccountId);
+                }
+            });
+        }
+    }
+
+    /**
+     * Removes the effective permissions of the members of a {@link UserRole}
+     * from the index. Invoke when the permissions granted to the role are
+     * changed. The members are removed immediately and again upon completion
+     * of the current transaction.
+     *
+     * @param userRole {@link UserRole} that was changed
+     */
+    public void invalidate(UserRole userRole) {
+        final List<Long> memberIds = daoService.findWithNamedQuery(Long.class, UserAccount.FIND_IDS_BY_USER_ROLE,
+                QueryBuilder.with(UserAccount.FIND_BY_USER_ROLE_PARAM_ROLENAME, userRole.getName()).parameters());
+        remove(memberIds);
+        if (txRegistry.getTransactionStatus() == Status.STATUS_ACTIVE) {
+            txRegistry.registerInterposedSynchronization(new Synchronization() {
+
+                @Override
+                public void beforeCompletion() {
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    remove(memberIds);
+                }
+            });
+        }
+    }
+
+    /**
+     * Removes the effective permissions of all user accounts and the resolved
+     * permission strings from the index. Invoke when permissions are removed
+     * or roles are deleted. The index is cleared immediately and again upon
+     * completion of the current transaction.
+     */
+    public void invalidateAll() {
+        clear();
+        if (txRegistry.getTransactionStatus() == Status.STATUS_ACTIVE) {
+            txRegistry.registerInterposedSynchronization(new Synchronization() {
+
+                @Override
+                public void beforeCompletion() {
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    clear();
+                }
+            });
+        }
+    }
+
+    /**
+     * Gets the number of user accounts held in the index.
+     *
+     * @return Number of user accounts held in the index
+     */
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * Removes the effective permissions of a {@link UserAccount} from the
+     * index.
+     *
+     * @param userAccountId Unique identifier of the {@link UserAccount}
+     */
+    private void remove(Long userAccountId) {
+        synchronized (this) {
+            generation.incrementAndGet();
+            index.remove(userAccountId);
+        }
+    }
+
+    /**
+     * Removes the effective permissions of user accounts from the index.
+     *
+     * @param userAccountIds Unique identifiers of the {@link UserAccount}s
+     */
+    private void remove(List<Long> userAccountIds) {
+        synchronized (this) {
+            generation.incrementAndGet();
+            for (Long userAccountId : userAccountIds) {
+                index.remove(userAccountId);
+            }
+        }
+    }
+
+    /**
+     * Removes the effective permissions of all user accounts and the resolved
+     * permission strings from the index.
+     */
+    private void clear() {
+        synchronized (this) {
+            generation.incrementAndGet();
+            index.clear();
+            permissionIds.clear();
+        }
+    }
+
+    /**
+     * Loads the effective permissions of a {@link UserAccount} and puts them
+     * into the index unless the index was invalidated while loading.
+     *
+     * @param userAccountId Unique identifier of the {@link UserAccount}
+     * @return Unique identifiers of the effective permissions
+     */
+    private Set<Long> load(Long userAccountId) {
+        long loadedGeneration = generation.get();
+        Map<String, Object> parameters = QueryBuilder.with(Permission.PARAM_USER_ACCOUNT_ID, userAccountId).parameters();
+        List<Long> direct = daoService.findWithNamedQuery(Long.class, Permission.FIND_IDS_BY_USER_ACCOUNT, parameters);
+        List<Long> throughRoles = daoService.findWithNamedQuery(Long.class, Permission.FIND_ROLE_PERMISSION_IDS_BY_USER_ACCOUNT, parameters);
+
+        Set<Long> permissionIds = new HashSet<>(direct);
+        permissionIds.addAll(throughRoles);
+        synchronized (this) {
+            if (loadedGeneration == generation.get()) {
+                index.put(userAccountId, permissionIds);
+            }
+        }
+        return permissionIds;
+    }
+}
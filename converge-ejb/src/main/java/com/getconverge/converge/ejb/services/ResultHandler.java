@@ -0,0 +1,34 @@
+/*
+ * Copyright (C) 2014 Converge Consulting Limited
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.getconverge.converge.ejb.services;
+
+/**
+ * Callback receiving the results of a query one at a time.
+ *
+ * @param <T> Type of result
+ * @author Allan Lykke Christensen
+ * @see DaoServiceBean#forEach(java.lang.Class, int, ResultHandler)
+ */
+public interface ResultHandler<T> {
+
+    /**
+     * Handles a single result of a query.
+     *
+     * @param result Result to handle
+     */
+    void handle(T result);
+}
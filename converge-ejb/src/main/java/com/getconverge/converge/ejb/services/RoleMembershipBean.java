@@ -0,0 +1,286 @@
+/*
+ * Copyright (C) 2014 Converge Consulting Limited
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.getconverge.converge.ejb.services;
+
+import com.getconverge.converge.entities.security.UserAccount;
+import com.getconverge.converge.entities.security.UserRole;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.EJB;
+import javax.ejb.LocalBean;
+import javax.ejb.Singleton;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+/**
+ * Singleton session bean providing the members of a {@link UserRole} by the
+ * name of the role. The unique identifiers of the members of a role are read
+ * with a single query upon the first lookup and kept until the membership of
+ * the role is changed through {@link #addMember(Long, Long)} or
+ * {@link #removeMember(Long, Long)}, or the role is invalidated. The members
+ * themselves are read in pages of identifiers, so that large roles can be
+ * traversed without holding all the members in memory.
+ *
+ * @author Allan Lykke Christensen
+ */
+@Singleton
+@LocalBean
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class RoleMembershipBean {
+
+    @EJB
+    private DaoServiceBean daoService;
+
+    @EJB
+    private PermissionIndexBean permissionIndex;
+
+    @EJB
+    private UserAccountCacheBean userAccountCache;
+
+    @Resource
+    private TransactionSynchronizationRegistry txRegistry;
+
+    /**
+     * Unique identifiers of the members of each role, sorted by username.
+     */
+    private final ConcurrentMap<String, List<Long>> members = new ConcurrentHashMap<>();
+
+    /**
+     * Incremented upon each invalidation so that members loaded before an
+     * invalidation are not put into the cache after it. Invalidations and
+     * puts are synchronized on the bean.
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * Gets the unique identifiers of the members of a {@link UserRole}.
+     *
+     * @param roleName Name of the {@link UserRole}
+     * @return Unmodifiable {@link List} of the unique identifiers of the
+     * members of the {@link UserRole} sorted by username. An empty
+     * {@link List} is returned if the role does not exist
+     */
+    public List<Long> getMemberIds(String roleName) {
+        List<Long> ids = members.get(roleName);
+        if (ids == null) {
+            ids = load(roleName);
+        }
+        return ids;
+    }
+
+    /**
+     * Gets the number of members of a {@link UserRole}.
+     *
+     * @param roleName Name of the {@link UserRole}
+     * @return Number of members of the {@link UserRole}
+     */
+    public int getMemberCount(String roleName) {
+        return getMemberIds(roleName).size();
+    }
+
+    /**
+     * Gets a page of the members of a {@link UserRole} sorted by username.
+     *
+     * @param roleName Name of the {@link UserRole}
+     * @param start First member to retrieve
+     * @param resultLimit Maximum number of members to retrieve
+     * @return {@link List} of the members of the {@link UserRole} on the page
+     */
+    public List<UserAccount> getMembers(String roleName, int start, int resultLimit) {
+        List<Long> ids = getMemberIds(roleName);
+        if (start >= ids.size() || resultLimit <= 0) {
+            return Collections.emptyList();
+        }
+        List<Long> page = ids.subList(start, Math.min(ids.size(), start + resultLimit));
+        return daoService.findWithNamedQuery(UserAccount.class, UserAccount.FIND_BY_IDS_WITH_ROLES_AND_PERMISSIONS,
+                QueryBuilder.with(UserAccount.FIND_BY_IDS_PARAM_IDS, page).parameters());
+    }
+
+    /**
+     * Passes each member of a {@link UserRole} to a {@link ResultHandler},
+     * sorted by username. The members are read in pages of {@code pageSize}
+     * with one query per page. The members are read-only and are not held by
+     * the persistence context, so that only a single page is held in memory
+     * at a time. Use for fanning out to all the members of a large role, e.g.
+     * when sending notifications.
+     *
+     * @param roleName Name of the {@link UserRole}
+     * @param pageSize Number of members to read per query
+     * @param handler {@link ResultHandler} receiving each member. The members
+     * must not be modified
+     * @return Number of members passed to the {@link ResultHandler}
+     * @throws IllegalArgumentException If {@code pageSize} is less than
+     * {@code 1}
+     */
+    public long forEachMember(String roleName, int pageSize, ResultHandler<? super UserAccount> handler) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Page size must be at least 1. " + pageSize + " is not a valid page size");
+        }
+
+        List<Long> ids = getMemberIds(roleName);
+        long count = 0;
+        for (int start = 0; start < ids.size(); start += pageSize) {
+            List<Long> page = ids.subList(start, Math.min(ids.size(), start + pageSize));
+            List<UserAccount> userAccounts = daoService.findWithNamedQueryReadOnly(UserAccount.class,
+                    UserAccount.FIND_BY_IDS_WITH_ROLES_AND_PERMISSIONS,
+                    QueryBuilder.with(UserAccount.FIND_BY_IDS_PARAM_IDS, page).parameters());
+            for (UserAccount userAccount : userAccounts) {
+                handler.handle(userAccount);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Adds a {@link UserAccount} as a member of a {@link UserRole}. The cached
+     * members of the role and the effective permissions of the user account
+     * are invalidated.
+     *
+     * @param userRoleId Unique identifier of the {@link UserRole}
+     * @param userAccountId Unique identifier of the {@link UserAccount}
+     * @return {@code true} if the {@link UserAccount} was added, or
+     * {@code false} if the {@link UserAccount} was already a member
+     * @throws DataNotFoundException If the {@link UserRole} or
+     * {@link UserAccount} does not exist
+     */
+    public boolean addMember(Long userRoleId, Long userAccountId) throws DataNotFoundException {
+        UserRole userRole = daoService.findById(UserRole.class, userRoleId);
+        UserAccount userAccount = daoService.findById(UserAccount.class, userAccountId);
+        if (!userRole.getUserAccounts().add(userAccount)) {
+            return false;
+        }
+        userAccount.getUserRoles().add(userRole);
+        membershipChanged(userRole.getName(), userAccount);
+        return true;
+    }
+
+    /**
+     * Removes a {@link UserAccount} from the members of a {@link UserRole}.
+     * The cached members of the role and the effective permissions of the
+     * user account are invalidated.
+     *
+     * @param userRoleId Unique identifier of the {@link UserRole}
+     * @param userAccountId Unique identifier of the {@link UserAccount}
+     * @return {@code true} if the {@link UserAccount} was removed, or
+     * {@code false} if the {@link UserAccount} was not a member
+     * @throws DataNotFoundException If the {@link UserRole} or
+     * {@link UserAccount} does not exist
+     */
+    public boolean removeMember(Long userRoleId, Long userAccountId) throws DataNotFoundException {
+        UserRole userRole = daoService.findById(UserRole.class, userRoleId);
+        UserAccount userAccount = daoService.findById(UserAccount.class, userAccountId);
+        if (!userRole.getUserAccounts().remove(userAccount)) {
+            return false;
+        }
+        userAccount.getUserRoles().remove(userRole);
+        membershipChanged(userRole.getName(), userAccount);
+        return true;
+    }
+
+    /**
+     * Removes the cached members of a {@link UserRole}. Invoke when the
+     * membership of the role is changed without using this bean, or when the
+     * role is renamed or deleted.
+     *
+     * @param roleName Name of the {@link UserRole}
+     */
+    public void invalidate(String roleName) {
+        synchronized (this) {
+            generation.incrementAndGet();
+            members.remove(roleName);
+        }
+    }
+
+    /**
+     * Removes the cached members of all roles.
+     */
+    public void invalidateAll() {
+        synchronized (this) {
+            generation.incrementAndGet();
+            members.clear();
+        }
+    }
+
+    /**
+     * Gets the number of roles for which the members are cached.
+     *
+     * @return Number of roles for which the members are cached
+     */
+    public int size() {
+        return members.size();
+    }
+
+    /**
+     * Invalidates the cached members of a role, and the cached user account
+     * and effective permissions of a user account whose membership of the
+     * role changed. The role is invalidated immediately and again upon
+     * completion of the current transaction, so that members read by a
+     * concurrent transaction before the change was committed do not remain in
+     * the cache. The {@link PermissionIndexBean} and
+     * {@link UserAccountCacheBean} do the same for the user account.
+     *
+     * @param roleName Name of the {@link UserRole}
+     * @param userAccount {@link UserAccount} whose membership changed
+     */
+    private void membershipChanged(final String roleName, UserAccount userAccount) {
+        invalidate(roleName);
+        permissionIndex.invalidate(userAccount.getId());
+        userAccountCache.invalidate(userAccount.getUsername());
+        if (txRegistry.getTransactionStatus() == Status.STATUS_ACTIVE) {
+            txRegistry.registerInterposedSynchronization(new Synchronization() {
+
+                @Override
+                public void beforeCompletion() {
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    invalidate(roleName);
+                }
+            });
+        }
+    }
+
+    /**
+     * Loads the unique identifiers of the members of a role and puts them
+     * into the cache unless the cache was invalidated while loading.
+     *
+     * @param roleName Name of the {@link UserRole}
+     * @return Unmodifiable {@link List} of the unique identifiers of the
+     * members
+     */
+    private List<Long> load(String roleName) {
+        long loadedGeneration = generation.get();
+        List<Long> ids = Collections.unmodifiableList(new ArrayList<>(daoService.findWithNamedQuery(Long.class, UserAccount.FIND_IDS_BY_USER_ROLE,
+                QueryBuilder.with(UserAccount.FIND_BY_USER_ROLE_PARAM_ROLENAME, roleName).parameters())));
+        synchronized (this) {
+            if (loadedGeneration == generation.get()) {
+                members.put(roleName, ids);
+            }
+        }
+        return ids;
+    }
+}
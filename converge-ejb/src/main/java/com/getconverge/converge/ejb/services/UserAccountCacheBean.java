@@ -0,0 +1,252 @@
+/*
+ * Copyright (C) 2014 Converge Consulting Limited
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.getconverge.converge.ejb.services;
+
+import com.getconverge.converge.entities.ConfigurationKey;
+import com.getconverge.converge.entities.security.UserAccount;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.EJB;
+import javax.ejb.LocalBean;
+import javax.ejb.Singleton;
+import javax.enterprise.event.Observes;
+import javax.enterprise.event.TransactionPhase;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+/**
+ * Singleton session bean resolving {@link UserAccount}s by username. Resolved
+ * user accounts are kept in a {@link LruCache} holding at most
+ * {@link ConfigurationKey#USER_ACCOUNT_CACHE_SIZE} user accounts for
+ * {@link ConfigurationKey#USER_ACCOUNT_CACHE_EXPIRY} seconds. Unknown
+ * usernames are kept for
+ * {@link ConfigurationKey#USER_ACCOUNT_CACHE_NEGATIVE_EXPIRY} seconds. The
+ * cache is created again, without the user accounts it held, when one of these
+ * configurations is changed. Concurrent lookups of the same username share a single query, so that a
+ * burst of logins by the same users does not exhaust the connection pool.
+ * <p>
+ * The user accounts returned are read-only. Use
+ * {@link #update(UserAccount)} for updating a user account, or invoke
+ * {@link #invalidate(String)} when a user account is created, renamed or
+ * changed without using this bean.
+ *
+ * @author Allan Lykke Christensen
+ */
+@Singleton
+@LocalBean
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class UserAccountCacheBean {
+
+    private static final long MILLISECONDS_PER_SECOND = 1000L;
+
+    private static final Set<ConfigurationKey> CACHE_CONFIGURATION = EnumSet.of(ConfigurationKey.USER_ACCOUNT_CACHE_SIZE,
+            ConfigurationKey.USER_ACCOUNT_CACHE_EXPIRY, ConfigurationKey.USER_ACCOUNT_CACHE_NEGATIVE_EXPIRY);
+
+    @EJB
+    private DaoServiceBean daoService;
+
+    @EJB
+    private ConfigurationServiceBean cfgService;
+
+    @Resource
+    private TransactionSynchronizationRegistry txRegistry;
+
+    private volatile LruCache<String, UserAccount> cache;
+
+    private final LruCache.Loader<String, UserAccount> loader = new LruCache.Loader<String, UserAccount>() {
+
+        @Override
+        public UserAccount load(String username) {
+            List<UserAccount> userAccounts = daoService.findWithNamedQueryReadOnly(UserAccount.class, UserAccount.FIND_BY_UID,
+                    QueryBuilder.with(UserAccount.FIND_BY_UID_PARAM_USERNAME, username).parameters());
+            return userAccounts.isEmpty() ? null : userAccounts.get(0);
+        }
+    };
+
+    /**
+     * Creates the cache using the configured size and expiry.
+     */
+    @PostConstruct
+    public void initialize() {
+        int size = cfgService.get(Long.class, ConfigurationKey.USER_ACCOUNT_CACHE_SIZE).intValue();
+        long expiry = cfgService.get(Long.class, ConfigurationKey.USER_ACCOUNT_CACHE_EXPIRY) * MILLISECONDS_PER_SECOND;
+        long negativeExpiry = cfgService.get(Long.class, ConfigurationKey.USER_ACCOUNT_CACHE_NEGATIVE_EXPIRY) * MILLISECONDS_PER_SECOND;
+        cache = new LruCache<>(size, expiry, negativeExpiry);
+    }
+
+    /**
+     * Creates the cache again when its size or expiry is changed. User
+     * accounts held by the previous cache are discarded.
+     *
+     * @param event Event fired when a configuration was changed
+     */
+    public void onConfigurationChanged(@Observes(during = TransactionPhase.AFTER_SUCCESS) ConfigurationChangedEvent event) {
+        if (CACHE_CONFIGURATION.contains(event.getKey())) {
+            initialize();
+        }
+    }
+
+    /**
+     * Finds a {@link UserAccount} by its username.
+     *
+     * @param username Username of the {@link UserAccount}
+     * @return Read-only {@link UserAccount} matching the username, or
+     * {@code null} if no user account has the username
+     */
+    public UserAccount findByUsername(String username) {
+        return cache.get(username, loader);
+    }
+
+    /**
+     * Updates a {@link UserAccount} and removes it from the cache. If the
+     * username of a detached {@link UserAccount} was changed, the previous
+     * username is removed from the cache as well.
+     *
+     * @param userAccount {@link UserAccount} to update
+     * @return Updated {@link UserAccount}
+     */
+    public UserAccount update(UserAccount userAccount) {
+        UserAccount persisted = daoService.find(UserAccount.class, userAccount.getId());
+        if (persisted != null && persisted != userAccount) {
+            invalidate(persisted.getUsername());
+        }
+        UserAccount updated = daoService.update(userAccount);
+        invalidate(updated.getUsername());
+        return updated;
+    }
+
+    /**
+     * Removes a username from the cache. The username is removed immediately
+     * and again upon completion of the current transaction, so that a
+     * {@link UserAccount} read by a concurrent transaction before the change
+     * was committed does not remain in the cache.
+     *
+     * @param username Username to remove from the cache
+     */
+    public void invalidate(final String username) {
+        cache.invalidate(username);
+        if (txRegistry.getTransactionStatus() == Status.STATUS_ACTIVE) {
+            txRegistry.registerInterposedSynchronization(new Synchronization() {
+
+                @Override
+                public void beforeCompletion() {
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    cache.invalidate(username);
+                }
+            });
+        }
+    }
+
+    /**
+     * Removes all usernames from the cache.
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * Gets the number of usernames held by the cache.
+     *
+     * @return Number of usernames held by the cache
+     */
+    public int size() {
+        return cache.size();
+    }
+
+    /**
+     * Gets the maximum number of usernames held by the cache.
+     *
+     * @return Maximum number of usernames held by the cache
+     */
+    public int getMaximumSize() {
+        return cache.getMaximumSize();
+    }
+
+    /**
+     * Gets the ratio of lookups served by the cache.
+     *
+     * @return Ratio between {@code 0} and {@code 1} of lookups served by the
+     * cache
+     */
+    public double getHitRatio() {
+        return cache.getHitRatio();
+    }
+
+    /**
+     * Gets the number of lookups served by the cache.
+     *
+     * @return Number of lookups served by the cache
+     */
+    public long getHits() {
+        return cache.getHitCount();
+    }
+
+    /**
+     * Gets the number of lookups that were not served by the cache.
+     *
+     * @return Number of lookups that were not served by the cache
+     */
+    public long getMisses() {
+        return cache.getMissCount();
+    }
+
+    /**
+     * Gets the number of user accounts evicted because the cache was full.
+     *
+     * @return Number of user accounts evicted because the cache was full
+     */
+    public long getEvictions() {
+        return cache.getEvictionCount();
+    }
+
+    /**
+     * Gets the number of user accounts removed because they expired.
+     *
+     * @return Number of user accounts removed because they expired
+     */
+    public long getExpirations() {
+        return cache.getExpirationCount();
+    }
+
+    /**
+     * Gets the number of queries made for finding a {@link UserAccount}.
+     *
+     * @return Number of queries made for finding a {@link UserAccount}
+     */
+    public long getLoads() {
+        return cache.getLoadCount();
+    }
+
+    /**
+     * Gets the average time spent querying a {@link UserAccount}.
+     *
+     * @return Average number of nanoseconds spent querying a
+     * {@link UserAccount}
+     */
+    public long getAverageLoadTime() {
+        return cache.getAverageLoadTime();
+    }
+}
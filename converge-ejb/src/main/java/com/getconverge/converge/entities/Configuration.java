@@ -17,6 +17,7 @@
 package com.getconverge.converge.entities;
 
 import java.io.Serializable;
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.EnumType;
@@ -27,8 +28,13 @@ import javax.persistence.Id;
 import javax.persistence.Lob;
 import javax.persistence.NamedQueries;
 import javax.persistence.NamedQuery;
+import javax.persistence.QueryHint;
 import javax.persistence.Table;
 import javax.persistence.UniqueConstraint;
+import javax.persistence.Version;
+import org.eclipse.persistence.annotations.Cache;
+import org.eclipse.persistence.config.HintValues;
+import org.eclipse.persistence.config.QueryHints;
 
 /**
  * {@link Entity} representing an application configuration that is stored in
@@ -37,10 +43,20 @@ import javax.persistence.UniqueConstraint;
  * @author Allan Lykke Christensen
  */
 @Entity
+@Cacheable
+@Cache(size = 200, expiry = 600000)
 @Table(name = "config", uniqueConstraints
         = @UniqueConstraint(columnNames = {"config_key"}))
 @NamedQueries({
-    @NamedQuery(name = Configuration.FIND_BY_KEY, query = "SELECT c FROM Configuration c WHERE c.key=:" + Configuration.PARAM_FIND_BY_KEY_KEY)
+    @NamedQuery(name = Configuration.FIND_BY_KEY, query = "SELECT c FROM Configuration c WHERE c.key=:" + Configuration.PARAM_FIND_BY_KEY_KEY, hints = {
+        @QueryHint(name = QueryHints.QUERY_RESULTS_CACHE, value = HintValues.TRUE),
+        @QueryHint(name = QueryHints.QUERY_RESULTS_CACHE_SIZE, value = "200"),
+        @QueryHint(name = QueryHints.QUERY_RESULTS_CACHE_EXPIRY, value = "600000"),
+        @QueryHint(name = QueryHints.QUERY_RESULTS_CACHE_IGNORE_NULL, value = HintValues.TRUE)}),
+    @NamedQuery(name = Configuration.FIND_BY_KEYS, query = "SELECT c FROM Configuration c WHERE c.key IN :" + Configuration.PARAM_FIND_BY_KEYS_KEYS),
+    @NamedQuery(name = Configuration.FIND_VERSIONS, query = "SELECT c.key, c.id, c.version FROM Configuration c"),
+    @NamedQuery(name = Configuration.FIND_VERSION_BY_KEY, query = "SELECT c.version FROM Configuration c WHERE c.key = :" + Configuration.PARAM_FIND_BY_KEY_KEY),
+    @NamedQuery(name = Configuration.UPDATE_IF_VERSION, query = "UPDATE Configuration c SET c.value = :" + Configuration.PARAM_UPDATE_IF_VERSION_VALUE + ", c.version = c.version + 1 WHERE c.key = :" + Configuration.PARAM_UPDATE_IF_VERSION_KEY + " AND c.version = :" + Configuration.PARAM_UPDATE_IF_VERSION_VERSION)
 })
 public class Configuration implements Serializable {
 
@@ -54,6 +70,48 @@ public class Configuration implements Serializable {
      * Parameter used to specify the key in the FIND_BY_KEY query.
      */
     public static final String PARAM_FIND_BY_KEY_KEY = "cfgKey";
+    /**
+     * Query for finding the configuration settings of a collection of keys.
+     */
+    public static final String FIND_BY_KEYS = "Configuration.findByKeys";
+    /**
+     * Parameter used to specify the collection of keys in the FIND_BY_KEYS
+     * query.
+     */
+    public static final String PARAM_FIND_BY_KEYS_KEYS = "cfgKeys";
+    /**
+     * Query for finding the key, unique identifier and version of all
+     * configuration settings. The query returns an {@code Object[]} for each
+     * configuration setting containing the key, unique identifier and
+     * version.
+     */
+    public static final String FIND_VERSIONS = "Configuration.findVersions";
+    /**
+     * Query for finding the version of a configuration setting by its unique
+     * key. The version is read from the database rather than the shared
+     * cache, which may hold a version that was since changed by another node.
+     * The key is specified using {@link #PARAM_FIND_BY_KEY_KEY}.
+     */
+    public static final String FIND_VERSION_BY_KEY = "Configuration.findVersionByKey";
+    /**
+     * Query for updating the value of a configuration setting only if the
+     * version of the configuration setting is unchanged. The query increments
+     * the version of the configuration setting.
+     */
+    public static final String UPDATE_IF_VERSION = "Configuration.updateIfVersion";
+    /**
+     * Parameter used to specify the key in the UPDATE_IF_VERSION query.
+     */
+    public static final String PARAM_UPDATE_IF_VERSION_KEY = "cfgKey";
+    /**
+     * Parameter used to specify the new value in the UPDATE_IF_VERSION query.
+     */
+    public static final String PARAM_UPDATE_IF_VERSION_VALUE = "cfgValue";
+    /**
+     * Parameter used to specify the expected version in the UPDATE_IF_VERSION
+     * query.
+     */
+    public static final String PARAM_UPDATE_IF_VERSION_VERSION = "cfgVersion";
 
     @Id
     @Column(name = "id")
@@ -68,6 +126,10 @@ public class Configuration implements Serializable {
     @Lob
     private String value;
 
+    @Version
+    @Column(name = "version")
+    private Long version;
+
     /**
      * Creates a new instance of {@link Configuration}.
      */
@@ -143,6 +205,27 @@ public class Configuration implements Serializable {
         this.value = value;
     }
 
+    /**
+     * Gets the version of the configuration setting. The version is
+     * incremented by the persistence framework every time the configuration
+     * setting is updated.
+     *
+     * @return Version of the configuration setting
+     */
+    public Long getVersion() {
+        return version;
+    }
+
+    /**
+     * Sets the version of the configuration setting. The persistence framework
+     * maintains the version so avoid using this setter.
+     *
+     * @param version Version of the configuration setting
+     */
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     @Override
     public int hashCode() {
         int hash = 0;
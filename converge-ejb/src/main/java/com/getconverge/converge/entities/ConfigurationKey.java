@@ -17,6 +17,8 @@
 package com.getconverge.converge.entities;
 
 import java.io.Serializable;
+import java.net.URL;
+import java.util.TimeZone;
 
 /**
  * Keys of configuration entries.
@@ -28,30 +30,30 @@ public enum ConfigurationKey implements Serializable {
     INVALID,
     VERSION,
     BUILD_TIME,
-    APPLICATION_NEWSFEED,
+    APPLICATION_NEWSFEED(URL.class),
     /**
      * Configuration for when the daily timer should be executed.
      */
-    DAILY_INTERVAL,
+    DAILY_INTERVAL(Long.class),
     WORKING_DIRECTORY,
     XML_MESSAGE_PACKAGE,
-    JOB_QUEUE_INTERVAL,
+    JOB_QUEUE_INTERVAL(Long.class),
     LANGUAGE,
     COUNTRY,
-    TIME_ZONE,
-    NEWSWIRE_INTERVAL,
-    NEWSWIRE_PURGE_INTERVAL,
-    EDITION_INTERVAL,
-    CATALOGUE_WATCH_INTERVAL,
-    SEARCH_ENGINE_INDEXING_INTERVAL,
-    SEARCH_ENGINE_URL,
-    SEARCH_ENGINE_NEWSWIRE_URL,
-    SEARCH_ENGINE_SOCKET_TIMEOUT,
-    SEARCH_ENGINE_CONNECTION_TIMEOUT,
-    SEARCH_ENGINE_FOLLOW_REDIRECTS,
-    SEARCH_ENGINE_MAX_TOTAL_CONNECTIONS_PER_HOST,
-    SEARCH_ENGINE_MAX_TOTAL_CONNECTIONS,
-    SEARCH_ENGINE_MAX_RETRIES,
+    TIME_ZONE(TimeZone.class),
+    NEWSWIRE_INTERVAL(Long.class),
+    NEWSWIRE_PURGE_INTERVAL(Long.class),
+    EDITION_INTERVAL(Long.class),
+    CATALOGUE_WATCH_INTERVAL(Long.class),
+    SEARCH_ENGINE_INDEXING_INTERVAL(Long.class),
+    SEARCH_ENGINE_URL(URL.class),
+    SEARCH_ENGINE_NEWSWIRE_URL(URL.class),
+    SEARCH_ENGINE_SOCKET_TIMEOUT(Long.class),
+    SEARCH_ENGINE_CONNECTION_TIMEOUT(Long.class),
+    SEARCH_ENGINE_FOLLOW_REDIRECTS(Boolean.class),
+    SEARCH_ENGINE_MAX_TOTAL_CONNECTIONS_PER_HOST(Long.class),
+    SEARCH_ENGINE_MAX_TOTAL_CONNECTIONS(Long.class),
+    SEARCH_ENGINE_MAX_RETRIES(Long.class),
     LDAP_GROUP_USERS,
     LDAP_GROUP_ADMINISTRATORS,
     LDAP_GROUP_MAPPING_NAME,
@@ -75,8 +77,8 @@ public enum ConfigurationKey implements Serializable {
     LDAP_EMPLOYMENT_TYPE_MAPPING_PERMANENT,
     LDAP_EMPLOYMENT_TYPE_MAPPING_FREELANCE,
     LDAP_CONNECTION_FACTORY,
-    LDAP_CONNECT_TIMEOUT,
-    LDAP_READ_TIMEOUT,
+    LDAP_CONNECT_TIMEOUT(Long.class),
+    LDAP_READ_TIMEOUT(Long.class),
     LDAP_PROVIDER_URL,
     LDAP_BASE,
     LDAP_SECURITY_PRINCIPAL,
@@ -85,15 +87,61 @@ public enum ConfigurationKey implements Serializable {
     /**
      * Number of days to keep log entries.
      */
-    LOG_KEEP,
+    LOG_KEEP(Long.class),
     /**
      * Number of days to keep entries in the activity stream
      */
-    ACTIVITY_STREAM_KEEP,
-    NEWSWIRE_BASKET_INTERVAL,
+    ACTIVITY_STREAM_KEEP(Long.class),
+    NEWSWIRE_BASKET_INTERVAL(Long.class),
     NEWSWIRE_BASKET_MAIL,
-    CONVERGE_HOME_URL,
-    SEARCH_ENGINE_ALLOW_COMPRESSION,
+    CONVERGE_HOME_URL(URL.class),
+    SEARCH_ENGINE_ALLOW_COMPRESSION(Boolean.class),
     OPEN_CALAIS_API_KEY,
-    AUTO_SAVE_INTERVAL
+    AUTO_SAVE_INTERVAL(Long.class),
+    /**
+     * Number of seconds between polling the database for configurations
+     * changed by other nodes. Polling is disabled if set to zero.
+     */
+    CONFIGURATION_POLL_INTERVAL(Long.class),
+    /**
+     * Maximum number of user accounts held by the user account cache.
+     */
+    USER_ACCOUNT_CACHE_SIZE(Long.class),
+    /**
+     * Number of seconds a user account is held by the user account cache.
+     */
+    USER_ACCOUNT_CACHE_EXPIRY(Long.class),
+    /**
+     * Number of seconds an unknown username is held by the user account
+     * cache. Unknown usernames are not cached if set to zero.
+     */
+    USER_ACCOUNT_CACHE_NEGATIVE_EXPIRY(Long.class);
+
+    private final Class<?> type;
+
+    /**
+     * Creates a configuration key holding a {@link String} value.
+     */
+    private ConfigurationKey() {
+        this(String.class);
+    }
+
+    /**
+     * Creates a configuration key holding a value of a given type.
+     *
+     * @param type Type of the value held by the configuration key
+     */
+    private ConfigurationKey(Class<?> type) {
+        this.type = type;
+    }
+
+    /**
+     * Gets the type of the value held by the configuration key. Values stored
+     * in the configuration key must be convertible to this type.
+     *
+     * @return Type of the value held by the configuration key
+     */
+    public Class<?> getType() {
+        return type;
+    }
 }
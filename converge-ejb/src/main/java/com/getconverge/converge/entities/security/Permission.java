@@ -17,24 +17,69 @@
 package com.getconverge.converge.entities.security;
 
 import java.io.Serializable;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.HashSet;
+import java.util.Set;
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
 import javax.persistence.ManyToMany;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
 import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+import org.eclipse.persistence.annotations.BatchFetch;
+import org.eclipse.persistence.annotations.BatchFetchType;
+import org.eclipse.persistence.annotations.Cache;
 
 /**
- * Permission granted to a specific {@link UserAccount} or {@link UserRole}.
+ * Permission granted to a specific {@link UserAccount} or {@link UserRole}. A
+ * {@link Permission} is identified by its unique permission string, which
+ * should not be changed while the {@link Permission} is contained in a
+ * {@link Set}.
  *
  * @author Allan Lykke Christensen
  */
 @Entity
-@Table(name = "permission")
+@Cacheable
+@Cache(size = 1000, expiry = 3600000)
+@Table(name = "permission", uniqueConstraints = @UniqueConstraint(columnNames = {"permission"}))
+@NamedQueries({
+    @NamedQuery(name = Permission.FIND_IDS_BY_USER_ACCOUNT, query = "SELECT p.id FROM UserAccount u JOIN u.permissions p WHERE u.id = :" + Permission.PARAM_USER_ACCOUNT_ID),
+    @NamedQuery(name = Permission.FIND_ROLE_PERMISSION_IDS_BY_USER_ACCOUNT, query = "SELECT DISTINCT p.id FROM UserRole r JOIN r.userAccounts u JOIN r.permissions p WHERE u.id = :" + Permission.PARAM_USER_ACCOUNT_ID),
+    @NamedQuery(name = Permission.FIND_ID_BY_PERMISSION, query = "SELECT p.id FROM Permission p WHERE p.permission = :" + Permission.PARAM_PERMISSION)
+})
 public class Permission implements Serializable {
 
+    /**
+     * Query for finding the unique identifiers of the permissions granted
+     * directly to a {@link UserAccount}.
+     */
+    public static final String FIND_IDS_BY_USER_ACCOUNT = "Permission.findIdsByUserAccount";
+    /**
+     * Query for finding the unique identifiers of the permissions granted to a
+     * {@link UserAccount} through the {@link UserRole}s where the user is a
+     * member.
+     */
+    public static final String FIND_ROLE_PERMISSION_IDS_BY_USER_ACCOUNT = "Permission.findRolePermissionIdsByUserAccount";
+    /**
+     * Parameter used to specify the unique identifier of the
+     * {@link UserAccount} in the {@link #FIND_IDS_BY_USER_ACCOUNT} and
+     * {@link #FIND_ROLE_PERMISSION_IDS_BY_USER_ACCOUNT} queries.
+     */
+    public static final String PARAM_USER_ACCOUNT_ID = "userAccountId";
+    /**
+     * Query for finding the unique identifier of a permission by its
+     * permission string.
+     */
+    public static final String FIND_ID_BY_PERMISSION = "Permission.findIdByPermission";
+    /**
+     * Parameter used to specify the permission string in the
+     * {@link #FIND_ID_BY_PERMISSION} query.
+     */
+    public static final String PARAM_PERMISSION = "permission";
+
     @Id
     @GeneratedValue
     @Column(name = "id")
@@ -44,7 +89,8 @@ public class Permission implements Serializable {
     private String permission;
 
     @ManyToMany(mappedBy = "permissions")
-    private List<UserRole> userRoles = new ArrayList<>();
+    @BatchFetch(value = BatchFetchType.IN, size = UserAccount.BATCH_FETCH_SIZE)
+    private Set<UserRole> userRoles = new HashSet<>();
 
     /**
      * Creates a new instance of {@link Permission}.
@@ -106,20 +152,24 @@ public class Permission implements Serializable {
     }
 
     /**
-     * Gets a {@link List} of the {@link UserRole}s granted the
+     * Gets a {@link Set} of the {@link UserRole}s granted the
      * {@link Permission}.
      *
-     * @return {@link List} of the {@link UserRole}s granted the
+     * @return {@link Set} of the {@link UserRole}s granted the
      * {@link Permission}.
      */
-    public List<UserRole> getUserRoles() {
+    public Set<UserRole> getUserRoles() {
         return userRoles;
     }
 
     /**
      * A {@link Permission} ({@code a}) is equal to another object ({@code b})
      * only if {@code b} is a {@link Permission} and
-     * {@code a.getId().equals(b.getId())}.
+     * {@code a.getId().equals(b.getId())}. The permission string is not used
+     * as it can be changed. A {@link Permission} without a unique identifier
+     * is only equal to itself. The unique identifier is generated when the
+     * {@link Permission} is persisted, which must happen before it is added to
+     * a {@link Set}, as the hash code changes when the identifier is assigned.
      *
      * @param object Object to determine if this object is equal
      * @return {@code true} if this {@link Permission} is equal to the given
@@ -127,11 +177,14 @@ public class Permission implements Serializable {
      */
     @Override
     public boolean equals(Object object) {
+        if (this == object) {
+            return true;
+        }
         if (!(object instanceof Permission)) {
             return false;
         }
         Permission other = (Permission) object;
-        return (this.id != null || other.id == null) && (this.id == null || this.id.equals(other.id));
+        return this.id != null && this.id.equals(other.id);
     }
 
     /**
@@ -139,9 +192,7 @@ public class Permission implements Serializable {
      */
     @Override
     public int hashCode() {
-        int hash = 0;
-        hash += (id != null ? id.hashCode() : 0);
-        return hash;
+        return id != null ? id.hashCode() : System.identityHashCode(this);
     }
 
     /**
@@ -149,6 +200,6 @@ public class Permission implements Serializable {
      */
     @Override
     public String toString() {
-        return getClass().getName() + "[id=" + id + "]";
+        return getClass().getName() + "[id=" + id + "/permission=" + permission + "]";
     }
 }
@@ -20,6 +20,10 @@ import java.awt.ComponentOrientation;
 import java.io.Serializable;
 import java.util.*;
 import javax.persistence.*;
+import org.eclipse.persistence.annotations.BatchFetch;
+import org.eclipse.persistence.annotations.BatchFetchType;
+import org.eclipse.persistence.annotations.Cache;
+import org.eclipse.persistence.config.QueryHints;
 
 /**
  * {@link UserAccount} with access to the system and relation news items,
@@ -32,15 +36,26 @@ import javax.persistence.*;
  * @author Allan Lykke Christensen
  */
 @Entity
+@Cacheable
+@Cache(size = 1000, expiry = 300000)
 @Table(name = "user_account", uniqueConstraints = @UniqueConstraint(columnNames = {"username"}))
 @NamedQueries({
     @NamedQuery(name = UserAccount.FIND_BY_UID, query = "SELECT u FROM UserAccount u WHERE u.username=:" + UserAccount.FIND_BY_UID_PARAM_USERNAME),
-    @NamedQuery(name = UserAccount.FIND_BY_USER_ROLE, query = "SELECT u FROM UserRole r JOIN r.userAccounts u WHERE r.name=:" + UserAccount.FIND_BY_USER_ROLE_PARAM_ROLENAME)
+    @NamedQuery(name = UserAccount.FIND_BY_USER_ROLE, query = "SELECT u FROM UserRole r JOIN r.userAccounts u WHERE r.name=:" + UserAccount.FIND_BY_USER_ROLE_PARAM_ROLENAME),
+    @NamedQuery(name = UserAccount.FIND_IDS_BY_USER_ROLE, query = "SELECT u.id FROM UserRole r JOIN r.userAccounts u WHERE r.name=:" + UserAccount.FIND_BY_USER_ROLE_PARAM_ROLENAME + " ORDER BY u.username"),
+    @NamedQuery(name = UserAccount.FIND_SUMMARIES, query = "SELECT NEW com.getconverge.converge.entities.security.UserAccountSummary(u.id, u.username, u.displayName) FROM UserAccount u ORDER BY u.displayName"),
+    @NamedQuery(name = UserAccount.FIND_BY_IDS_WITH_ROLES_AND_PERMISSIONS, query = "SELECT u FROM UserAccount u WHERE u.id IN :" + UserAccount.FIND_BY_IDS_PARAM_IDS + " ORDER BY u.username", hints = {
+        @QueryHint(name = QueryHints.BATCH_TYPE, value = "IN"),
+        @QueryHint(name = QueryHints.BATCH, value = "u.userRoles"),
+        @QueryHint(name = QueryHints.BATCH, value = "u.userRoles.permissions"),
+        @QueryHint(name = QueryHints.BATCH, value = "u.permissions")})
 })
 public class UserAccount implements Serializable {
 
     /**
-     * Query for finding a user account by its unique user identifier.
+     * Query for finding a user account by its unique user identifier. The
+     * results are not cached by the query, as user accounts are resolved by
+     * username through the {@code UserAccountCacheBean}.
      */
     public static final String FIND_BY_UID = "UserAccount.findByUid";
     /**
@@ -54,22 +69,60 @@ public class UserAccount implements Serializable {
     public static final String FIND_BY_USER_ROLE = "UserAccount.findByUserRole";
     /**
      * {@code Rolename} parameter for the {@link UserAccount#FIND_BY_USER_ROLE}
-     * query.
+     * and {@link UserAccount#FIND_IDS_BY_USER_ROLE} queries.
      */
     public static final String FIND_BY_USER_ROLE_PARAM_ROLENAME = "rolename";
 
+    /**
+     * Query for finding the unique identifiers of the user accounts who are
+     * members of a given role, sorted by username.
+     */
+    public static final String FIND_IDS_BY_USER_ROLE = "UserAccount.findIdsByUserRole";
+
+    /**
+     * Query for finding {@link UserAccountSummary summaries} of all user
+     * accounts sorted by display name. Only the columns needed for the summary
+     * are retrieved.
+     */
+    public static final String FIND_SUMMARIES = "UserAccount.findSummaries";
+
+    /**
+     * Query for finding user accounts by their unique identifiers. The roles
+     * and permissions of the user accounts are read in batches upon first
+     * access, using one query per relation for all the user accounts found.
+     * Use with a page of identifiers, e.g. from {@link #FIND_SUMMARIES}.
+     */
+    public static final String FIND_BY_IDS_WITH_ROLES_AND_PERMISSIONS = "UserAccount.findByIdsWithRolesAndPermissions";
+    /**
+     * {@code Ids} parameter for the
+     * {@link UserAccount#FIND_BY_IDS_WITH_ROLES_AND_PERMISSIONS} query.
+     */
+    public static final String FIND_BY_IDS_PARAM_IDS = "ids";
+
+    /**
+     * Maximum number of entities for which the relations between
+     * {@link UserAccount}s, {@link UserRole}s and {@link Permission}s are
+     * read in a single batch. When a relation is first accessed on one of the
+     * entities returned by a query, the relation is read for up to this
+     * number of the entities returned by the query using a single query with
+     * an {@code IN} list. The size can be changed for a single query using the
+     * {@code eclipselink.batch.size} query hint.
+     */
+    public static final int BATCH_FETCH_SIZE = 100;
+
     @Id
     @Column(name = "id")
     private Long id;
 
-    @Column(name = "username", length = 255)
+    @Column(name = "username", length = 255, nullable = false)
     private String username = "";
 
     @Column(name = "time_zone")
     private String timeZone;
 
     @ManyToMany(mappedBy = "userAccounts")
-    private List<UserRole> userRoles = new ArrayList<>();
+    @BatchFetch(value = BatchFetchType.IN, size = BATCH_FETCH_SIZE)
+    private Set<UserRole> userRoles = new HashSet<>();
 
     @Column(name = "preferred_language")
     private String language = "";
@@ -101,12 +154,13 @@ public class UserAccount implements Serializable {
     private String mobile = "";
 
     @ManyToMany(fetch = FetchType.LAZY)
+    @BatchFetch(value = BatchFetchType.IN, size = BATCH_FETCH_SIZE)
     @JoinTable(name = "user_account_has_permission",
             joinColumns = {
                 @JoinColumn(referencedColumnName = "id", name = "user_account_id", nullable = false)},
             inverseJoinColumns = {
                 @JoinColumn(referencedColumnName = "id", name = "permission_id", nullable = false)})
-    private List<Permission> permissions = new ArrayList<>();
+    private Set<Permission> permissions = new HashSet<>();
 
     /**
      * Creates a new instance of user.
@@ -308,39 +362,39 @@ public class UserAccount implements Serializable {
     /**
      * Gets the {@link Permission}s granted directly to the user account.
      *
-     * @return {@link List} of {@link Permission}s granted directly to the user
+     * @return {@link Set} of {@link Permission}s granted directly to the user
      * account.
      */
-    public List<Permission> getPermissions() {
+    public Set<Permission> getPermissions() {
         return permissions;
     }
 
     /**
      * Sets the {@link Permission}s granted directly to the user account.
      *
-     * @param permissions {@link List} of {@link Permission}s granted directly
+     * @param permissions {@link Set} of {@link Permission}s granted directly
      * to the user account.
      */
-    public void setPermissions(List<Permission> permissions) {
+    public void setPermissions(Set<Permission> permissions) {
         this.permissions = permissions;
     }
 
     /**
-     * Gets a {@link List} of the {@link UserRole}s where the user is a member.
+     * Gets a {@link Set} of the {@link UserRole}s where the user is a member.
      *
-     * @return {@link List} of the {@link UserRole}s where the user is a member
+     * @return {@link Set} of the {@link UserRole}s where the user is a member
      */
-    public List<UserRole> getUserRoles() {
+    public Set<UserRole> getUserRoles() {
         return userRoles;
     }
 
     /**
-     * Sets a {@link List} of the {@link UserRole}s where the user is a member.
+     * Sets a {@link Set} of the {@link UserRole}s where the user is a member.
      *
-     * @param userRoles {@link List} of the {@link UserRole}s where the user is
+     * @param userRoles {@link Set} of the {@link UserRole}s where the user is
      * a member
      */
-    public void setUserRoles(List<UserRole> userRoles) {
+    public void setUserRoles(Set<UserRole> userRoles) {
         this.userRoles = userRoles;
     }
 
@@ -466,15 +520,17 @@ public class UserAccount implements Serializable {
      */
     @Override
     public int hashCode() {
-        int hash = 0;
-        hash += (username != null ? username.hashCode() : 0);
-        return hash;
+        return id != null ? id.hashCode() : System.identityHashCode(this);
     }
 
     /**
      * A {@link UserAccount} ({@code a}) is equal to another object ({@code b})
      * only if {@code b} is a {@link UserAccount} and
-     * {@code a.getUsername().equals(b.getUsername())}.
+     * {@code a.getId().equals(b.getId())}. The username is not used as the
+     * user account can be renamed. A {@link UserAccount} without a unique
+     * identifier is only equal to itself. The unique identifier must be
+     * assigned before the {@link UserAccount} is added to a {@link Set}, as
+     * the hash code changes when it is assigned.
      *
      * @param object Object to determine if this object is equal
      * @return {@code true} if this {@link UserAccount} is equal to the given
@@ -482,12 +538,15 @@ public class UserAccount implements Serializable {
      */
     @Override
     public boolean equals(Object object) {
+        if (this == object) {
+            return true;
+        }
         if (!(object instanceof UserAccount)) {
             return false;
         }
 
         UserAccount other = (UserAccount) object;
-        return (this.username != null || other.username == null) && (this.username == null || this.username.equals(other.username));
+        return this.id != null && this.id.equals(other.id);
     }
 
     /**
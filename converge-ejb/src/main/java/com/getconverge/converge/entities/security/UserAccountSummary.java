@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2014 Converge Consulting Limited
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.getconverge.converge.entities.security;
+
+import java.io.Serializable;
+
+/**
+ * Summary of a {@link UserAccount} containing only the details needed for
+ * listing user accounts. Summaries are retrieved using the
+ * {@link UserAccount#FIND_SUMMARIES} query and are not managed by the
+ * persistence framework.
+ *
+ * @author Allan Lykke Christensen
+ */
+public class UserAccountSummary implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Long id;
+
+    private final String username;
+
+    private final String displayName;
+
+    /**
+     * Creates a new instance of {@link UserAccountSummary}.
+     *
+     * @param id Unique identifier of the user account
+     * @param username Username of the user account
+     * @param displayName Display name of the user account
+     */
+    public UserAccountSummary(Long id, String username, String displayName) {
+        this.id = id;
+        this.username = username;
+        this.displayName = displayName;
+    }
+
+    /**
+     * Gets the unique identifier of the user account.
+     *
+     * @return Unique identifier of the user account
+     */
+    public Long getId() {
+        return id;
+    }
+
+    /**
+     * Gets the username of the user account.
+     *
+     * @return Username of the user account
+     */
+    public String getUsername() {
+        return username;
+    }
+
+    /**
+     * Gets the display name of the user account.
+     *
+     * @return Display name of the user account
+     */
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    @Override
+    public String toString() {
+        return username;
+    }
+}
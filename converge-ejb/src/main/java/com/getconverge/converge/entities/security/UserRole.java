@@ -17,25 +17,32 @@
 package com.getconverge.converge.entities.security;
 
 import java.io.Serializable;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.HashSet;
+import java.util.Set;
 import javax.persistence.*;
+import org.eclipse.persistence.annotations.BatchFetch;
+import org.eclipse.persistence.annotations.BatchFetchType;
+import org.eclipse.persistence.annotations.Cache;
 
 /**
  * {@link UserRole} contains {@link Permission}s which a {@link UserAccount} can
- * be granted by being a member.
+ * be granted by being a member. A {@link UserRole} is identified by its unique
+ * name, which should not be changed while the {@link UserRole} is contained in
+ * a {@link Set}.
  *
  * @author Allan Lykke Christensen
  */
 @Entity
-@Table(name = "user_role")
+@Cacheable
+@Cache(size = 500, expiry = 3600000)
+@Table(name = "user_role", uniqueConstraints = @UniqueConstraint(columnNames = {"role_name"}))
 public class UserRole implements Serializable {
 
     @Id
     @Column(name = "id")
     private Long id;
 
-    @Column(name = "role_name", length = 255)
+    @Column(name = "role_name", length = 255, nullable = false)
     private String name;
 
     @Column(name = "description")
@@ -43,20 +50,22 @@ public class UserRole implements Serializable {
     private String description;
 
     @ManyToMany(fetch = FetchType.LAZY)
+    @BatchFetch(value = BatchFetchType.IN, size = UserAccount.BATCH_FETCH_SIZE)
     @JoinTable(name = "user_role_has_permission",
             joinColumns = {
                 @JoinColumn(referencedColumnName = "id", name = "user_role_id", nullable = false)},
             inverseJoinColumns = {
                 @JoinColumn(referencedColumnName = "id", name = "permission_id", nullable = false)})
-    private List<Permission> permissions = new ArrayList<>();
+    private Set<Permission> permissions = new HashSet<>();
 
     @ManyToMany(fetch = FetchType.LAZY)
+    @BatchFetch(value = BatchFetchType.IN, size = UserAccount.BATCH_FETCH_SIZE)
     @JoinTable(name = "user_account_has_user_role",
             joinColumns = {
-                @JoinColumn(referencedColumnName = "id", name = "user_account_id", nullable = false)},
+                @JoinColumn(referencedColumnName = "id", name = "user_role_id", nullable = false)},
             inverseJoinColumns = {
-                @JoinColumn(referencedColumnName = "id", name = "user_role_id", nullable = false)})
-    private List<UserAccount> userAccounts = new ArrayList<>();
+                @JoinColumn(referencedColumnName = "id", name = "user_account_id", nullable = false)})
+    private Set<UserAccount> userAccounts = new HashSet<>();
 
     /**
      * Creates a new instance of {@link UserRole}.
@@ -129,51 +138,55 @@ public class UserRole implements Serializable {
     }
 
     /**
-     * Gets a {@link List} of the {@link Permission}s granted to the
+     * Gets a {@link Set} of the {@link Permission}s granted to the
      * {@link UserRole}.
      *
-     * @return {@link List} of the {@link Permission}s granted to the
+     * @return {@link Set} of the {@link Permission}s granted to the
      * {@link UserRole}
      */
-    public List<Permission> getPermissions() {
+    public Set<Permission> getPermissions() {
         return permissions;
     }
 
     /**
-     * Sets the {@link List} of {@link Permission}s granted to the
+     * Sets the {@link Set} of {@link Permission}s granted to the
      * {@link UserRole}.
      *
-     * @param permissions {@link List} of the {@link Permission}s granted to the
+     * @param permissions {@link Set} of the {@link Permission}s granted to the
      * {@link UserRole}
      */
-    public void setPermissions(List<Permission> permissions) {
+    public void setPermissions(Set<Permission> permissions) {
         this.permissions = permissions;
     }
 
     /**
      * Gets the members of the {@link UserRole}.
      *
-     * @return {@link List} of {@link UserAccount}s that are members of the
-     * {@link UserAccount}
+     * @return {@link Set} of {@link UserAccount}s that are members of the
+     * {@link UserRole}
      */
-    public List<UserAccount> getUserAccounts() {
+    public Set<UserAccount> getUserAccounts() {
         return userAccounts;
     }
 
     /**
      * Sets the members of the {@link UserRole}.
      *
-     * @param userAccounts {@link List} of {@link UserAccount}s that are members
-     * of the {@link UserAccount}
+     * @param userAccounts {@link Set} of {@link UserAccount}s that are members
+     * of the {@link UserRole}
      */
-    public void setUserAccounts(List<UserAccount> userAccounts) {
+    public void setUserAccounts(Set<UserAccount> userAccounts) {
         this.userAccounts = userAccounts;
     }
 
     /**
      * A {@link UserRole} ({@code a}) is equal to another object ({@code b})
      * only if {@code b} is a {@link UserRole} and
-     * {@code a.getId().equals(b.getId())}.
+     * {@code a.getId().equals(b.getId())}. The name is not used as it can be
+     * changed. A {@link UserRole} without a unique identifier is only equal to
+     * itself. The unique identifier must be assigned before the
+     * {@link UserRole} is added to a {@link Set}, as the hash code changes
+     * when it is assigned.
      *
      * @param obj Object to determine if this object is equal
      * @return {@code true} if this {@link UserRole} is equal to the given
@@ -181,6 +194,9 @@ public class UserRole implements Serializable {
      */
     @Override
     public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
         if (obj == null) {
             return false;
         }
@@ -188,7 +204,7 @@ public class UserRole implements Serializable {
             return false;
         }
         final UserRole other = (UserRole) obj;
-        return this.id == other.id || (this.id != null && this.id.equals(other.id));
+        return this.id != null && this.id.equals(other.id);
     }
 
     /**
@@ -196,9 +212,7 @@ public class UserRole implements Serializable {
      */
     @Override
     public int hashCode() {
-        int hash = 3;
-        hash = 79 * hash + (this.id != null ? this.id.hashCode() : 0);
-        return hash;
+        return this.id != null ? this.id.hashCode() : System.identityHashCode(this);
     }
 
     /**
@@ -206,6 +220,6 @@ public class UserRole implements Serializable {
      */
     @Override
     public String toString() {
-        return getClass().getName() + "[id=" + id + "]";
+        return getClass().getName() + "[id=" + id + "/name=" + name + "]";
     }
 }
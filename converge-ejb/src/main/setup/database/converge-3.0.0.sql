@@ -13,8 +13,9 @@ DROP TABLE IF EXISTS `converge`.`permission` ;
 
 CREATE TABLE IF NOT EXISTS `converge`.`permission` (
   `id` BIGINT NOT NULL,
-  `permission` VARCHAR(255) NULL,
-  PRIMARY KEY (`id`))
+  `permission` VARCHAR(255) NOT NULL,
+  PRIMARY KEY (`id`),
+  UNIQUE INDEX `permission_UNIQUE` (`permission` ASC))
 ENGINE = InnoDB;
 
 
@@ -25,9 +26,10 @@ DROP TABLE IF EXISTS `converge`.`user_role` ;
 
 CREATE TABLE IF NOT EXISTS `converge`.`user_role` (
   `id` BIGINT NOT NULL,
-  `name` VARCHAR(255) NULL,
+  `role_name` VARCHAR(255) NOT NULL,
   `description` BLOB NULL,
-  PRIMARY KEY (`id`))
+  PRIMARY KEY (`id`),
+  UNIQUE INDEX `role_name_UNIQUE` (`role_name` ASC))
 ENGINE = InnoDB;
 
 
@@ -38,7 +40,7 @@ DROP TABLE IF EXISTS `converge`.`user_account` ;
 
 CREATE TABLE IF NOT EXISTS `converge`.`user_account` (
   `id` BIGINT NOT NULL,
-  `username` VARCHAR(255) NULL,
+  `username` VARCHAR(255) NOT NULL,
   `time_zone` VARCHAR(255) NULL,
   `preferred_language` VARCHAR(255) NULL,
   `display_name` VARCHAR(255) NULL,
@@ -63,7 +65,9 @@ CREATE TABLE IF NOT EXISTS `converge`.`config` (
   `id` BIGINT NOT NULL,
   `config_key` VARCHAR(255) NULL,
   `config_value` BLOB NULL,
-  PRIMARY KEY (`id`))
+  `version` BIGINT NOT NULL DEFAULT 1,
+  PRIMARY KEY (`id`),
+  UNIQUE INDEX `config_key_UNIQUE` (`config_key` ASC))
 ENGINE = InnoDB;
 
 
@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2014 Converge Consulting Limited
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.getconverge.converge.ejb.services;
+
+import com.getconverge.converge.entities.ConfigurationKey;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.enterprise.event.TransactionPhase;
+
+/**
+ * Observer recording the {@link ConfigurationChangedEvent}s fired during a
+ * test.
+ */
+@ApplicationScoped
+public class ConfigurationChangeRecorder {
+
+    private final List<ConfigurationChangedEvent> allChanges = new CopyOnWriteArrayList<>();
+
+    private final List<ConfigurationChangedEvent> languageChanges = new CopyOnWriteArrayList<>();
+
+    public void onChange(@Observes(during = TransactionPhase.AFTER_SUCCESS) ConfigurationChangedEvent event) {
+        allChanges.add(event);
+    }
+
+    public void onLanguageChange(@Observes(during = TransactionPhase.AFTER_SUCCESS) @ConfigurationChanged(ConfigurationKey.LANGUAGE) ConfigurationChangedEvent event) {
+        languageChanges.add(event);
+    }
+
+    public List<ConfigurationChangedEvent> getAllChanges() {
+        return allChanges;
+    }
+
+    public List<ConfigurationChangedEvent> getLanguageChanges() {
+        return languageChanges;
+    }
+
+    public void clear() {
+        allChanges.clear();
+        languageChanges.clear();
+    }
+}
@@ -18,7 +18,10 @@ package com.getconverge.converge.ejb.services;
 
 import com.getconverge.converge.entities.Configuration;
 import com.getconverge.converge.entities.ConfigurationKey;
+import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.Locale;
+import java.util.Map;
 import java.util.ResourceBundle;
 import javax.ejb.EJBException;
 import javax.inject.Inject;
@@ -39,6 +42,10 @@ public class ConfigurationServiceBeanTest {
     private ConfigurationServiceBean cfgService;
     @Inject
     private DaoServiceBean daoService;
+    @Inject
+    private ConfigurationCacheBean cfgCache;
+    @Inject
+    private ConfigurationChangeRecorder changeRecorder;
 
     @Deployment
     public static EnterpriseArchive prepareDeploymentForTesting() {
@@ -46,9 +53,18 @@ public class ConfigurationServiceBeanTest {
         JavaArchive jar = ShrinkWrap.create(JavaArchive.class, "converge-ejb.jar");
         jar.addClasses(Configuration.class,
                 ConfigurationServiceBean.class,
+                ConfigurationCacheBean.class,
+                ConfigurationValue.class,
+                ConfigurationChanged.class,
+                ConfigurationChangedEvent.class,
+                ConfigurationChangeRecorder.class,
+                ConfigurationVersionTracker.class,
                 DaoServiceBean.class,
                 DataNotFoundException.class,
-                QueryBuilder.class);
+                KeysetPage.class,
+                QueryBuilder.class,
+                QueryCounter.class,
+                ResultHandler.class);
         jar.addAsManifestResource("META-INF/beans.xml", "beans.xml");
         jar.addAsManifestResource("META-INF/test-persistence.xml", "persistence.xml");
         ear.addAsModule(jar);
@@ -58,6 +74,8 @@ public class ConfigurationServiceBeanTest {
     @Before
     public void initData() {
         daoService.executeQuery("DELETE FROM Configuration");
+        cfgCache.invalidateAll();
+        changeRecorder.clear();
     }
 
     @Test
@@ -72,6 +90,35 @@ public class ConfigurationServiceBeanTest {
         assertEquals(defaultLanguageInConvergeProperties, value);
     }
 
+    @Test
+    public void configurationServiceBean_getConfigurationWithoutValueWithDefaultValue_returnGivenDefaultValue() {
+        // Arrange
+        String defaultValue = "fallback";
+
+        // Act
+        String value = cfgService.get(String.class, ConfigurationKey.INVALID, defaultValue);
+
+        // Assert
+        assertEquals(defaultValue, value);
+    }
+
+    @Test
+    public void configurationServiceBean_getConfigurationCustomizedWithoutValue_returnDefaultConfigurationValue() {
+        // Arrange
+        ResourceBundle convergeProperties = ResourceBundle.getBundle("Converge");
+        String expCountry = convergeProperties.getString(ConfigurationKey.COUNTRY.toString());
+        daoService.create(new Configuration(ConfigurationKey.COUNTRY, null));
+        cfgCache.invalidate(ConfigurationKey.COUNTRY);
+
+        // Act
+        String value = cfgService.get(String.class, ConfigurationKey.COUNTRY);
+        Map<ConfigurationKey, ConfigurationValue> values = cfgCache.getAll(EnumSet.of(ConfigurationKey.COUNTRY));
+
+        // Assert
+        assertEquals(expCountry, value);
+        assertEquals(expCountry, values.get(ConfigurationKey.COUNTRY).getValue());
+    }
+
     @Test
     public void configurationServiceBean_setConfigurationGetConfiguration_returnCustomizedConfigurationValue() {
         // Arrange
@@ -253,4 +300,247 @@ public class ConfigurationServiceBeanTest {
         // Assert
         assertEquals(expLanguage, resetLanguage);
     }
+
+    @Test
+    public void configurationServiceBean_getConfigurationTwice_secondLookupServedFromCache() {
+        // Arrange
+        cfgService.get(String.class, ConfigurationKey.LANGUAGE);
+        long hits = cfgCache.getHits();
+        long misses = cfgCache.getMisses();
+
+        // Act
+        cfgService.get(String.class, ConfigurationKey.LANGUAGE);
+
+        // Assert
+        assertEquals(hits + 1, cfgCache.getHits());
+        assertEquals(misses, cfgCache.getMisses());
+    }
+
+    @Test
+    public void configurationServiceBean_setCachedConfiguration_cachedValueInvalidated() {
+        // Arrange
+        String customLanguage = "da";
+        cfgService.get(String.class, ConfigurationKey.LANGUAGE);
+
+        // Act
+        cfgService.set(ConfigurationKey.LANGUAGE, customLanguage);
+
+        // Assert
+        assertFalse(cfgCache.getSnapshot().containsKey(ConfigurationKey.LANGUAGE));
+        assertEquals(customLanguage, cfgService.get(String.class, ConfigurationKey.LANGUAGE));
+    }
+
+    @Test
+    public void configurationServiceBean_reloadSnapshot_snapshotContainsDefaultAndCustomizedValues() {
+        // Arrange
+        String customCountry = "dk";
+        ResourceBundle convergeProperties = ResourceBundle.getBundle("Converge");
+        String expLanguage = convergeProperties.getString(ConfigurationKey.LANGUAGE.toString());
+        daoService.create(new Configuration(ConfigurationKey.COUNTRY, customCountry));
+
+        // Act
+        cfgCache.reload();
+        Map<ConfigurationKey, ConfigurationValue> snapshot = cfgCache.getSnapshot();
+
+        // Assert
+        assertEquals(expLanguage, snapshot.get(ConfigurationKey.LANGUAGE).getValue());
+        assertEquals(customCountry, snapshot.get(ConfigurationKey.COUNTRY).getValue());
+    }
+
+    @Test
+    public void configurationServiceBean_getBooleanConfigurationAsBoolean_returnDefaultConfigurationValueAsBoolean() {
+        // Act
+        Boolean value = cfgService.get(Boolean.class, ConfigurationKey.SEARCH_ENGINE_FOLLOW_REDIRECTS);
+
+        // Assert
+        assertEquals(Boolean.FALSE, value);
+    }
+
+    @Test
+    public void configurationServiceBean_setInvalidNumberConfiguration_throwIllegalArgumentException() {
+        // Arrange
+        String invalidInterval = "fifteen minutes";
+
+        // Act
+        try {
+            cfgService.set(ConfigurationKey.NEWSWIRE_INTERVAL, invalidInterval);
+            // Assert
+            fail("Expected IllegalArgumentException as value cannot be converted to the type of the key");
+        } catch (EJBException ex) {
+
+        }
+    }
+
+    @Test
+    public void configurationServiceBean_getAllWithCustomizedAndDefaultConfigurations_returnAllValues() {
+        // Arrange
+        String customCountry = "dk";
+        String defaultLanguage = "en";
+        cfgService.set(ConfigurationKey.COUNTRY, customCountry);
+
+        // Act
+        Map<ConfigurationKey, String> values = cfgService.getAll(EnumSet.of(ConfigurationKey.LANGUAGE, ConfigurationKey.COUNTRY));
+
+        // Assert
+        assertEquals(2, values.size());
+        assertEquals(defaultLanguage, values.get(ConfigurationKey.LANGUAGE));
+        assertEquals(customCountry, values.get(ConfigurationKey.COUNTRY));
+    }
+
+    @Test
+    public void configurationServiceBean_setAllWithNewAndExistingConfigurations_allValuesUpdated() {
+        // Arrange
+        cfgService.set(ConfigurationKey.LANGUAGE, "da");
+        Map<ConfigurationKey, String> values = new EnumMap<>(ConfigurationKey.class);
+        values.put(ConfigurationKey.LANGUAGE, "fr");
+        values.put(ConfigurationKey.COUNTRY, "be");
+
+        // Act
+        cfgService.setAll(values);
+
+        // Assert
+        assertEquals(values, cfgService.getAll(values.keySet()));
+    }
+
+    @Test
+    public void configurationServiceBean_setAllWithInvalidValue_noValuesUpdated() {
+        // Arrange
+        String defaultLanguage = cfgService.get(String.class, ConfigurationKey.LANGUAGE);
+        Map<ConfigurationKey, String> values = new EnumMap<>(ConfigurationKey.class);
+        values.put(ConfigurationKey.LANGUAGE, "fr");
+        values.put(ConfigurationKey.NEWSWIRE_INTERVAL, "not a number");
+
+        // Act
+        try {
+            cfgService.setAll(values);
+            fail("Expected IllegalArgumentException as NEWSWIRE_INTERVAL cannot be converted");
+        } catch (EJBException ex) {
+
+        }
+
+        // Assert
+        assertEquals(defaultLanguage, cfgService.get(String.class, ConfigurationKey.LANGUAGE));
+    }
+
+    @Test
+    public void configurationServiceBean_setConfiguration_changeEventFiredForKey() {
+        // Arrange
+        String customLanguage = "da";
+        String customCountry = "dk";
+
+        // Act
+        cfgService.set(ConfigurationKey.LANGUAGE, customLanguage);
+        cfgService.set(ConfigurationKey.COUNTRY, customCountry);
+
+        // Assert
+        assertEquals(2, changeRecorder.getAllChanges().size());
+        assertEquals(1, changeRecorder.getLanguageChanges().size());
+        ConfigurationChangedEvent event = changeRecorder.getLanguageChanges().get(0);
+        assertEquals(ConfigurationKey.LANGUAGE, event.getKey());
+        assertEquals(customLanguage, event.getValue());
+        assertFalse(event.isReset());
+    }
+
+    @Test
+    public void configurationServiceBean_resetCustomConfiguration_resetEventFired() {
+        // Arrange
+        cfgService.set(ConfigurationKey.LANGUAGE, "da");
+        changeRecorder.clear();
+
+        // Act
+        cfgService.reset(ConfigurationKey.LANGUAGE);
+
+        // Assert
+        assertEquals(1, changeRecorder.getLanguageChanges().size());
+        assertTrue(changeRecorder.getLanguageChanges().get(0).isReset());
+    }
+
+    @Test
+    public void configurationServiceBean_pollAfterConfigurationChangedByAnotherNode_changedConfigurationInvalidated() {
+        // Arrange
+        String otherNodeLanguage = "da";
+        cfgCache.reload();
+        cfgService.get(String.class, ConfigurationKey.LANGUAGE);
+        daoService.create(new Configuration(ConfigurationKey.LANGUAGE, otherNodeLanguage));
+
+        // Act
+        cfgCache.poll();
+
+        // Assert
+        assertFalse(cfgCache.getSnapshot().containsKey(ConfigurationKey.LANGUAGE));
+        assertTrue(cfgCache.getSnapshot().containsKey(ConfigurationKey.COUNTRY));
+        assertEquals(otherNodeLanguage, cfgService.get(String.class, ConfigurationKey.LANGUAGE));
+    }
+
+    @Test
+    public void configurationServiceBean_getVersionOfCachedConfiguration_versionReadFromDatabase() throws Exception {
+        // Arrange
+        Configuration cfg = daoService.create(new Configuration(ConfigurationKey.LANGUAGE, "da"));
+        daoService.findById(Configuration.class, cfg.getId());
+
+        // Act
+        QueryCounter counter = QueryCounter.start(daoService.getEntityManager().getEntityManagerFactory());
+        long version = cfgService.getConfigurationVersion(ConfigurationKey.LANGUAGE);
+        int statements = counter.stop();
+
+        // Assert
+        assertEquals(cfg.getVersion().longValue(), version);
+        assertEquals(1, statements);
+    }
+
+    @Test
+    public void configurationServiceBean_setWithCurrentVersion_valueUpdatedAndVersionIncremented() {
+        // Arrange
+        cfgService.set(ConfigurationKey.LANGUAGE, "da");
+        long version = cfgService.getConfigurationVersion(ConfigurationKey.LANGUAGE);
+
+        // Act
+        boolean updated = cfgService.set(ConfigurationKey.LANGUAGE, version, "de");
+
+        // Assert
+        assertTrue(updated);
+        assertEquals("de", cfgService.get(String.class, ConfigurationKey.LANGUAGE));
+        assertTrue(cfgService.getConfigurationVersion(ConfigurationKey.LANGUAGE) > version);
+    }
+
+    @Test
+    public void configurationServiceBean_setWithStaleVersion_valueNotUpdated() {
+        // Arrange
+        cfgService.set(ConfigurationKey.LANGUAGE, "da");
+        long staleVersion = cfgService.getConfigurationVersion(ConfigurationKey.LANGUAGE);
+        cfgService.set(ConfigurationKey.LANGUAGE, staleVersion, "de");
+
+        // Act
+        boolean updated = cfgService.set(ConfigurationKey.LANGUAGE, staleVersion, "fr");
+
+        // Assert
+        assertFalse(updated);
+        assertEquals("de", cfgService.get(String.class, ConfigurationKey.LANGUAGE));
+    }
+
+    @Test
+    public void configurationServiceBean_setNotCustomizedWithNotCustomizedVersion_valueCreated() {
+        // Act
+        boolean created = cfgService.set(ConfigurationKey.LANGUAGE, ConfigurationServiceBean.NOT_CUSTOMIZED, "da");
+        boolean createdAgain = cfgService.set(ConfigurationKey.LANGUAGE, ConfigurationServiceBean.NOT_CUSTOMIZED, "de");
+
+        // Assert
+        assertTrue(created);
+        assertFalse(createdAgain);
+        assertEquals("da", cfgService.get(String.class, ConfigurationKey.LANGUAGE));
+    }
+
+    @Test
+    public void configurationServiceBean_setNotCustomizedAfterCreatedByAnotherNode_valueNotUpdated() {
+        // Arrange
+        daoService.create(new Configuration(ConfigurationKey.LANGUAGE, "da"));
+
+        // Act
+        boolean created = cfgService.set(ConfigurationKey.LANGUAGE, ConfigurationServiceBean.NOT_CUSTOMIZED, "de");
+
+        // Assert
+        assertFalse(created);
+        assertEquals(1, daoService.count(Configuration.class, "id").intValue());
+        assertEquals("da", cfgService.get(String.class, ConfigurationKey.LANGUAGE));
+    }
 }
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2014 Converge Consulting Limited
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.getconverge.converge.ejb.services;
+
+import com.getconverge.converge.entities.ConfigurationKey;
+import java.net.URL;
+import java.util.Locale;
+import java.util.ResourceBundle;
+import java.util.TimeZone;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ConfigurationValueTest {
+
+    @Test
+    public void configurationValue_asLongTwice_returnSameConvertedInstance() {
+        // Arrange
+        ConfigurationValue value = new ConfigurationValue("30000");
+
+        // Act
+        Long first = value.as(Long.class);
+        Long second = value.as(Long.class);
+
+        // Assert
+        assertEquals(Long.valueOf(30000L), first);
+        assertSame(first, second);
+    }
+
+    @Test
+    public void configurationValue_asBoolean_returnBoolean() {
+        // Arrange
+        ConfigurationValue value = new ConfigurationValue("TRUE");
+
+        // Act
+        Boolean result = value.as(Boolean.class);
+
+        // Assert
+        assertEquals(Boolean.TRUE, result);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void configurationValue_asBooleanWithInvalidValue_throwIllegalArgumentException() {
+        new ConfigurationValue("yes").as(Boolean.class);
+    }
+
+    @Test
+    public void configurationValue_asUrl_returnUrl() throws Exception {
+        // Arrange
+        String url = "http://localhost:8080/solr";
+        ConfigurationValue value = new ConfigurationValue(url);
+
+        // Act
+        URL result = value.as(URL.class);
+
+        // Assert
+        assertEquals(new URL(url), result);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void configurationValue_asUrlWithInvalidValue_throwIllegalArgumentException() {
+        new ConfigurationValue("not a url").as(URL.class);
+    }
+
+    @Test
+    public void configurationValue_asTimeZone_returnTimeZone() {
+        // Arrange
+        ConfigurationValue value = new ConfigurationValue("CET");
+
+        // Act
+        TimeZone result = value.as(TimeZone.class);
+
+        // Assert
+        assertEquals(TimeZone.getTimeZone("CET"), result);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void configurationValue_asTimeZoneWithUnknownTimeZone_throwIllegalArgumentException() {
+        new ConfigurationValue("Nowhere/Special").as(TimeZone.class);
+    }
+
+    @Test
+    public void configurationValue_asLocaleWithLanguageAndCountry_returnLocale() {
+        // Arrange
+        ConfigurationValue value = new ConfigurationValue("en_GB");
+
+        // Act
+        Locale result = value.as(Locale.class);
+
+        // Assert
+        assertEquals(new Locale("en", "GB"), result);
+    }
+
+    @Test
+    public void configurationValue_asEnum_returnEnumConstant() {
+        // Arrange
+        ConfigurationValue value = new ConfigurationValue("LANGUAGE");
+
+        // Act
+        ConfigurationKey result = value.as(ConfigurationKey.class);
+
+        // Assert
+        assertEquals(ConfigurationKey.LANGUAGE, result);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void configurationValue_asUnsupportedType_throwUnsupportedOperationException() {
+        new ConfigurationValue("1.5").as(Double.class);
+    }
+
+    @Test
+    public void configurationValue_defaultConfigurations_convertibleToTypeOfKey() {
+        // Arrange
+        ResourceBundle defaults = ResourceBundle.getBundle("Converge");
+
+        // Act & Assert
+        for (ConfigurationKey key : ConfigurationKey.values()) {
+            if (defaults.containsKey(key.name())) {
+                ConfigurationValue.convert(defaults.getString(key.name()), key.getType());
+            }
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2014 Converge Consulting Limited
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.getconverge.converge.ejb.services;
+
+import com.getconverge.converge.entities.ConfigurationKey;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Simulates several nodes sharing the same persisted configurations. Each
+ * node is represented by its own {@link ConfigurationVersionTracker}.
+ */
+public class ConfigurationVersionTrackerTest {
+
+    private Map<ConfigurationKey, ConfigurationVersionTracker.Version> database;
+    private ConfigurationVersionTracker node1;
+    private ConfigurationVersionTracker node2;
+    private ConfigurationVersionTracker node3;
+
+    @Before
+    public void startNodes() {
+        database = new EnumMap<>(ConfigurationKey.class);
+        database.put(ConfigurationKey.LANGUAGE, version(1, 1));
+        database.put(ConfigurationKey.COUNTRY, version(2, 1));
+        node1 = new ConfigurationVersionTracker();
+        node2 = new ConfigurationVersionTracker();
+        node3 = new ConfigurationVersionTracker();
+        node1.reset(database);
+        node2.reset(database);
+        node3.reset(database);
+    }
+
+    @Test
+    public void configurationVersionTracker_noChanges_noKeysInvalidated() {
+        // Act
+        Set<ConfigurationKey> changed = node2.update(database);
+
+        // Assert
+        assertTrue(changed.isEmpty());
+    }
+
+    @Test
+    public void configurationVersionTracker_configurationUpdatedOnOneNode_onlyUpdatedKeyInvalidatedOnOtherNodes() {
+        // Arrange
+        database.put(ConfigurationKey.LANGUAGE, version(1, 2));
+
+        // Act
+        Set<ConfigurationKey> changedOnNode2 = node2.update(database);
+        Set<ConfigurationKey> changedOnNode3 = node3.update(database);
+
+        // Assert
+        assertEquals(EnumSet.of(ConfigurationKey.LANGUAGE), changedOnNode2);
+        assertEquals(EnumSet.of(ConfigurationKey.LANGUAGE), changedOnNode3);
+    }
+
+    @Test
+    public void configurationVersionTracker_configurationCreatedAndResetOnOneNode_createdAndResetKeysInvalidated() {
+        // Arrange
+        database.put(ConfigurationKey.TIME_ZONE, version(3, 1));
+        database.remove(ConfigurationKey.COUNTRY);
+
+        // Act
+        Set<ConfigurationKey> changed = node2.update(database);
+
+        // Assert
+        assertEquals(EnumSet.of(ConfigurationKey.TIME_ZONE, ConfigurationKey.COUNTRY), changed);
+    }
+
+    @Test
+    public void configurationVersionTracker_pollTwiceAfterUpdate_keyOnlyInvalidatedOnce() {
+        // Arrange
+        database.put(ConfigurationKey.LANGUAGE, version(1, 2));
+        node2.update(database);
+
+        // Act
+        Set<ConfigurationKey> changed = node2.update(database);
+
+        // Assert
+        assertTrue(changed.isEmpty());
+    }
+
+    @Test
+    public void configurationVersionTracker_updatesBetweenPolls_allUpdatedKeysInvalidated() {
+        // Arrange
+        database.put(ConfigurationKey.LANGUAGE, version(1, 2));
+        node1.update(database);
+        database.put(ConfigurationKey.COUNTRY, version(2, 2));
+
+        // Act
+        Set<ConfigurationKey> changedOnNode1 = node1.update(database);
+        Set<ConfigurationKey> changedOnNode2 = node2.update(database);
+
+        // Assert
+        assertEquals(EnumSet.of(ConfigurationKey.COUNTRY), changedOnNode1);
+        assertEquals(EnumSet.of(ConfigurationKey.LANGUAGE, ConfigurationKey.COUNTRY), changedOnNode2);
+    }
+
+    @Test
+    public void configurationVersionTracker_configurationResetAndCustomizedBetweenPolls_keyInvalidated() {
+        // Arrange
+        database.put(ConfigurationKey.LANGUAGE, version(4, 1));
+
+        // Act
+        Set<ConfigurationKey> changed = node2.update(database);
+
+        // Assert
+        assertEquals(EnumSet.of(ConfigurationKey.LANGUAGE), changed);
+    }
+
+    private static ConfigurationVersionTracker.Version version(long id, long number) {
+        return new ConfigurationVersionTracker.Version(id, number);
+    }
+}
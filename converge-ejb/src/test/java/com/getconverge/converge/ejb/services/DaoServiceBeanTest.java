@@ -18,7 +18,16 @@ package com.getconverge.converge.ejb.services;
 
 import com.getconverge.converge.entities.Configuration;
 import com.getconverge.converge.entities.ConfigurationKey;
+import com.getconverge.converge.entities.security.Permission;
+import com.getconverge.converge.entities.security.UserAccount;
+import com.getconverge.converge.entities.security.UserAccountSummary;
+import com.getconverge.converge.entities.security.UserRole;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.RandomAccess;
+import javax.ejb.EJBException;
 import javax.inject.Inject;
 import javax.persistence.EntityManager;
 import org.jboss.arquillian.container.test.api.Deployment;
@@ -27,7 +36,10 @@ import org.jboss.shrinkwrap.api.ShrinkWrap;
 import org.jboss.shrinkwrap.api.spec.EnterpriseArchive;
 import org.jboss.shrinkwrap.api.spec.JavaArchive;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import org.junit.Before;
 import org.junit.Test;
@@ -44,9 +56,16 @@ public class DaoServiceBeanTest {
         EnterpriseArchive ear = ShrinkWrap.create(EnterpriseArchive.class, "converge.ear");
         JavaArchive jar = ShrinkWrap.create(JavaArchive.class, "converge-ejb.jar");
         jar.addClasses(Configuration.class,
+                Permission.class,
+                UserAccount.class,
+                UserAccountSummary.class,
+                UserRole.class,
+                QueryCounter.class,
                 DaoServiceBean.class,
                 DataNotFoundException.class,
-                QueryBuilder.class);
+                KeysetPage.class,
+                QueryBuilder.class,
+                ResultHandler.class);
         jar.addAsManifestResource("META-INF/beans.xml", "beans.xml");
         jar.addAsManifestResource("META-INF/test-persistence.xml", "persistence.xml");
         ear.addAsModule(jar);
@@ -56,6 +75,19 @@ public class DaoServiceBeanTest {
     @Before
     public void initData() {
         daoService.executeQuery("DELETE FROM Configuration");
+        // Bulk deletes do not remove the rows of the join tables
+        for (UserRole role : daoService.findAll(UserRole.class)) {
+            role.getUserAccounts().clear();
+            role.getPermissions().clear();
+            daoService.update(role);
+        }
+        for (UserAccount user : daoService.findAll(UserAccount.class)) {
+            user.getPermissions().clear();
+            daoService.update(user);
+        }
+        daoService.executeQuery("DELETE FROM UserRole");
+        daoService.executeQuery("DELETE FROM UserAccount");
+        daoService.executeQuery("DELETE FROM Permission");
     }
 
     @Test
@@ -283,6 +315,20 @@ public class DaoServiceBeanTest {
         assertEquals(3L, entities.size());
     }
 
+    @Test
+    public void daoService_findAllThreeEntities_randomAccessList() throws Exception {
+        // Arrange
+        daoService.create(new Configuration(ConfigurationKey.COUNTRY, "dk"));
+        daoService.create(new Configuration(ConfigurationKey.TIME_ZONE, "CET"));
+        daoService.create(new Configuration(ConfigurationKey.LANGUAGE, "da"));
+
+        // Act
+        List<Configuration> entities = daoService.findAll(Configuration.class);
+
+        // Assert
+        assertTrue(entities instanceof RandomAccess);
+    }
+
     @Test
     public void daoService_findAllAscendingThreeEntities_listWithThreeItemsInAscendingOrder() throws Exception {
         // Arrange
@@ -390,4 +436,446 @@ public class DaoServiceBeanTest {
         assertEquals("da", entities.get(0).getValue());
     }
 
+    @Test
+    public void daoService_createDeferredNewEntity_entityCreatedOnCommit() throws Exception {
+        // Arrange
+        Configuration cfg = new Configuration(ConfigurationKey.LANGUAGE, "da");
+
+        // Act
+        daoService.createDeferred(cfg);
+
+        // Assert
+        List<Configuration> entities = daoService.findAll(Configuration.class);
+        assertEquals(1L, entities.size());
+        assertEquals(ConfigurationKey.LANGUAGE, entities.get(0).getKey());
+        assertNotNull(entities.get(0).getId());
+    }
+
+    @Test
+    public void daoService_persistAllThreeEntities_threeEntitiesCreated() throws Exception {
+        // Arrange
+        List<Configuration> cfgs = Arrays.asList(
+                new Configuration(ConfigurationKey.COUNTRY, "dk"),
+                new Configuration(ConfigurationKey.LANGUAGE, "da"),
+                new Configuration(ConfigurationKey.TIME_ZONE, "CET"));
+
+        // Act
+        daoService.persistAll(cfgs);
+
+        // Assert
+        assertEquals(3L, daoService.findAll(Configuration.class).size());
+    }
+
+    @Test
+    public void daoService_persistAllThreeEntitiesInBatchesOfTwo_threeEntitiesCreated() throws Exception {
+        // Arrange
+        List<Configuration> cfgs = Arrays.asList(
+                new Configuration(ConfigurationKey.COUNTRY, "dk"),
+                new Configuration(ConfigurationKey.LANGUAGE, "da"),
+                new Configuration(ConfigurationKey.TIME_ZONE, "CET"));
+
+        // Act
+        daoService.persistAll(cfgs, 2);
+
+        // Assert
+        assertEquals(3L, daoService.findAll(Configuration.class).size());
+    }
+
+    @Test
+    public void daoService_mergeAllTwoEntities_twoEntitiesUpdated() throws Exception {
+        // Arrange
+        Configuration country = daoService.create(new Configuration(ConfigurationKey.COUNTRY, "dk"));
+        Configuration language = daoService.create(new Configuration(ConfigurationKey.LANGUAGE, "da"));
+        country.setValue("gb");
+        language.setValue("en");
+
+        // Act
+        List<Configuration> result = daoService.mergeAll(Arrays.asList(country, language), 1);
+
+        // Assert
+        assertEquals(2L, result.size());
+        assertEquals("gb", daoService.findById(Configuration.class, country.getId()).getValue());
+        assertEquals("en", daoService.findById(Configuration.class, language.getId()).getValue());
+    }
+
+    @Test
+    public void daoService_deleteAllTwoOfThreeEntities_oneEntityRemaining() throws Exception {
+        // Arrange
+        Configuration country = daoService.create(new Configuration(ConfigurationKey.COUNTRY, "dk"));
+        Configuration language = daoService.create(new Configuration(ConfigurationKey.LANGUAGE, "da"));
+        daoService.create(new Configuration(ConfigurationKey.TIME_ZONE, "CET"));
+
+        // Act
+        int deleted = daoService.deleteAll(Configuration.class, Arrays.asList(country.getId(), language.getId()));
+
+        // Assert
+        assertEquals(2, deleted);
+        List<Configuration> entities = daoService.findAll(Configuration.class);
+        assertEquals(1L, entities.size());
+        assertEquals(ConfigurationKey.TIME_ZONE, entities.get(0).getKey());
+    }
+
+    @Test
+    public void daoService_forEachThreeEntitiesWithFetchSizeTwo_allEntitiesHandled() throws Exception {
+        // Arrange
+        daoService.create(new Configuration(ConfigurationKey.COUNTRY, "dk"));
+        daoService.create(new Configuration(ConfigurationKey.LANGUAGE, "da"));
+        daoService.create(new Configuration(ConfigurationKey.TIME_ZONE, "CET"));
+        final List<ConfigurationKey> keys = new ArrayList<>();
+
+        // Act
+        long handled = daoService.forEach(Configuration.class, 2, new ResultHandler<Configuration>() {
+            @Override
+            public void handle(Configuration result) {
+                keys.add(result.getKey());
+            }
+        });
+
+        // Assert
+        assertEquals(3L, handled);
+        assertEquals(Arrays.asList(ConfigurationKey.COUNTRY, ConfigurationKey.LANGUAGE, ConfigurationKey.TIME_ZONE), keys);
+    }
+
+    @Test
+    public void daoService_forEachWithNamedQueryReturningRows_allRowsHandled() throws Exception {
+        // Arrange
+        daoService.create(new Configuration(ConfigurationKey.COUNTRY, "dk"));
+        daoService.create(new Configuration(ConfigurationKey.LANGUAGE, "da"));
+        daoService.create(new Configuration(ConfigurationKey.TIME_ZONE, "CET"));
+        final List<Object> keys = new ArrayList<>();
+
+        // Act
+        long handled = daoService.forEachWithNamedQuery(Configuration.FIND_VERSIONS, Collections.<String, Object>emptyMap(), 2,
+                new ResultHandler<Object>() {
+                    @Override
+                    public void handle(Object result) {
+                        keys.add(((Object[]) result)[0]);
+                    }
+                });
+
+        // Assert
+        assertEquals(3L, handled);
+        assertTrue(keys.containsAll(Arrays.asList(ConfigurationKey.COUNTRY, ConfigurationKey.LANGUAGE, ConfigurationKey.TIME_ZONE)));
+    }
+
+    @Test
+    public void daoService_forEachWithNamedQueryReturningSummaries_allSummariesHandled() throws Exception {
+        // Arrange
+        for (long id = 21; id <= 23; id++) {
+            UserAccount user = new UserAccount("summary" + id);
+            user.setId(id);
+            daoService.create(user);
+        }
+        final List<Long> ids = new ArrayList<>();
+
+        // Act
+        long handled = daoService.forEachWithNamedQuery(UserAccount.FIND_SUMMARIES, Collections.<String, Object>emptyMap(), 2,
+                new ResultHandler<Object>() {
+                    @Override
+                    public void handle(Object result) {
+                        ids.add(((UserAccountSummary) result).getId());
+                    }
+                });
+
+        // Assert
+        assertEquals(3L, handled);
+        assertTrue(ids.containsAll(Arrays.asList(21L, 22L, 23L)));
+    }
+
+    @Test
+    public void daoService_forEachChangingEntitiesOnSeveralPages_allChangesPersisted() throws Exception {
+        // Arrange
+        daoService.create(new Configuration(ConfigurationKey.COUNTRY, "dk"));
+        daoService.create(new Configuration(ConfigurationKey.LANGUAGE, "da"));
+        daoService.create(new Configuration(ConfigurationKey.TIME_ZONE, "CET"));
+
+        // Act
+        daoService.forEach(Configuration.class, 2, new ResultHandler<Configuration>() {
+            @Override
+            public void handle(Configuration result) {
+                result.setValue("changed");
+            }
+        });
+
+        // Assert
+        daoService.evict(Configuration.class);
+        for (Configuration cfg : daoService.findAll(Configuration.class)) {
+            assertEquals("changed", cfg.getValue());
+        }
+    }
+
+    @Test
+    public void daoService_findPageOfTwoDescendingThreeEntities_pagesFollowEachOther() throws Exception {
+        // Arrange
+        daoService.create(new Configuration(ConfigurationKey.COUNTRY, "dk"));
+        daoService.create(new Configuration(ConfigurationKey.LANGUAGE, "da"));
+        daoService.create(new Configuration(ConfigurationKey.TIME_ZONE, "CET"));
+
+        // Act
+        KeysetPage<Configuration> first = daoService.findPage(Configuration.class, "key", false, 2, null);
+        KeysetPage<Configuration> second = daoService.findPage(Configuration.class, "key", false, 2, first.getNext());
+
+        // Assert
+        assertEquals(2L, first.getResults().size());
+        assertEquals(ConfigurationKey.TIME_ZONE, first.getResults().get(0).getKey());
+        assertEquals(ConfigurationKey.LANGUAGE, first.getResults().get(1).getKey());
+        assertTrue(first.hasNext());
+        assertEquals(1L, second.getResults().size());
+        assertEquals(ConfigurationKey.COUNTRY, second.getResults().get(0).getKey());
+        assertFalse(second.hasNext());
+    }
+
+    @Test
+    public void daoService_findPageWithEqualSortValues_noEntitiesSkippedOrRepeated() throws Exception {
+        // Arrange
+        Configuration first = daoService.create(new Configuration(ConfigurationKey.COUNTRY, "same"));
+        Configuration second = daoService.create(new Configuration(ConfigurationKey.LANGUAGE, "same"));
+        Configuration third = daoService.create(new Configuration(ConfigurationKey.TIME_ZONE, "same"));
+
+        // Act
+        KeysetPage<Configuration> page1 = daoService.findPage(Configuration.class, "version", true, 1, null);
+        KeysetPage<Configuration> page2 = daoService.findPage(Configuration.class, "version", true, 1, page1.getNext());
+        KeysetPage<Configuration> page3 = daoService.findPage(Configuration.class, "version", true, 1, page2.getNext());
+
+        // Assert
+        assertEquals(first.getId(), page1.getResults().get(0).getId());
+        assertEquals(second.getId(), page2.getResults().get(0).getId());
+        assertEquals(third.getId(), page3.getResults().get(0).getId());
+        assertFalse(page3.hasNext());
+    }
+
+    @Test
+    public void daoService_findPageOrderedByLargeObject_throwIllegalArgumentException() throws Exception {
+        // Arrange
+        daoService.create(new Configuration(ConfigurationKey.LANGUAGE, "da"));
+
+        // Act
+        try {
+            daoService.findPage(Configuration.class, "value", true, 2, null);
+            // Assert
+            fail("Expected IllegalArgumentException as large objects cannot be sorted");
+        } catch (EJBException ex) {
+
+        }
+    }
+
+    @Test
+    public void daoService_findAllOrderedByUnknownField_throwIllegalArgumentException() throws Exception {
+        // Arrange
+        String unknownField = "value; DELETE FROM Configuration";
+
+        // Act
+        try {
+            daoService.findAll(Configuration.class, unknownField, true);
+            // Assert
+            fail("Expected IllegalArgumentException as the field does not exist in the entity");
+        } catch (EJBException ex) {
+
+        }
+    }
+
+    @Test
+    public void daoService_countByField_numberOfEntities() throws Exception {
+        // Arrange
+        daoService.create(new Configuration(ConfigurationKey.COUNTRY, "dk"));
+        daoService.create(new Configuration(ConfigurationKey.LANGUAGE, "da"));
+
+        // Act
+        Number count = daoService.count(Configuration.class, "id");
+
+        // Assert
+        assertEquals(2L, count.longValue());
+    }
+
+    @Test
+    public void daoService_findProjectionAsTuples_onlySelectedAttributesReturned() throws Exception {
+        // Arrange
+        daoService.create(new Configuration(ConfigurationKey.LANGUAGE, "da"));
+
+        // Act
+        List<Object[]> result = daoService.findProjection(Configuration.class, Object[].class, "key", "value");
+
+        // Assert
+        assertEquals(1L, result.size());
+        assertEquals(2L, result.get(0).length);
+        assertEquals(ConfigurationKey.LANGUAGE, result.get(0)[0]);
+        assertEquals("da", result.get(0)[1]);
+    }
+
+    @Test
+    public void daoService_findProjectionWithUnknownAttribute_throwIllegalArgumentException() throws Exception {
+        // Act
+        try {
+            daoService.findProjection(Configuration.class, Object[].class, "unknown");
+            // Assert
+            fail("Expected IllegalArgumentException as the attribute does not exist in the entity");
+        } catch (EJBException ex) {
+
+        }
+    }
+
+    @Test
+    public void daoService_findAllReadOnly_allEntitiesFound() throws Exception {
+        // Arrange
+        daoService.create(new Configuration(ConfigurationKey.LANGUAGE, "da"));
+
+        // Act
+        List<Configuration> result = daoService.findAllReadOnly(Configuration.class);
+
+        // Assert
+        assertEquals(1L, result.size());
+        assertEquals("da", result.get(0).getValue());
+    }
+
+    @Test
+    public void daoService_findWithTypedNamedQueryWithParameters_listWithOneResult() throws Exception {
+        // Arrange
+        daoService.create(new Configuration(ConfigurationKey.COUNTRY, "dk"));
+        daoService.create(new Configuration(ConfigurationKey.LANGUAGE, "da"));
+        QueryBuilder queryBuilder = QueryBuilder.with(Configuration.PARAM_FIND_BY_KEY_KEY, ConfigurationKey.LANGUAGE);
+
+        // Act
+        List<Configuration> entities = daoService.findWithNamedQuery(Configuration.class, Configuration.FIND_BY_KEY, queryBuilder.parameters());
+
+        // Assert
+        assertEquals(1L, entities.size());
+        assertEquals("da", entities.get(0).getValue());
+    }
+
+    @Test
+    public void daoService_findFirstWithNamedQueryWithoutMatch_returnNull() throws Exception {
+        // Arrange
+        daoService.create(new Configuration(ConfigurationKey.COUNTRY, "dk"));
+        QueryBuilder queryBuilder = QueryBuilder.with(Configuration.PARAM_FIND_BY_KEY_KEY, ConfigurationKey.LANGUAGE);
+
+        // Act
+        Configuration result = daoService.findFirstWithNamedQuery(Configuration.class, Configuration.FIND_BY_KEY, queryBuilder.parameters());
+
+        // Assert
+        assertNull(result);
+    }
+
+    @Test
+    public void daoService_findNonExistingEntity_returnNull() throws Exception {
+        // Arrange
+        Configuration addedEntity = daoService.create(new Configuration(ConfigurationKey.LANGUAGE, "da"));
+        daoService.delete(Configuration.class, addedEntity.getId());
+
+        // Act
+        Configuration result = daoService.find(Configuration.class, addedEntity.getId());
+
+        // Assert
+        assertNull(result);
+    }
+
+    @Test
+    public void daoService_findCacheableEntityTwice_entityServedFromSharedCache() throws Exception {
+        // Arrange
+        Configuration cfg = daoService.create(new Configuration(ConfigurationKey.LANGUAGE, "da"));
+        daoService.evict(Configuration.class);
+        daoService.findById(Configuration.class, cfg.getId());
+
+        // Act
+        QueryCounter counter = QueryCounter.start(daoService.getEntityManager().getEntityManagerFactory());
+        Configuration found = daoService.findById(Configuration.class, cfg.getId());
+        int statements = counter.stop();
+
+        // Assert
+        assertEquals(cfg.getId(), found.getId());
+        assertEquals("da", found.getValue());
+        assertEquals("Expected the second lookup to be served without SQL", 0, statements);
+    }
+
+    @Test
+    public void daoService_evictCachedEntity_entityRemovedFromSharedCache() throws Exception {
+        // Arrange
+        Configuration cfg = daoService.create(new Configuration(ConfigurationKey.LANGUAGE, "da"));
+        daoService.findById(Configuration.class, cfg.getId());
+
+        // Act
+        daoService.evict(Configuration.class, cfg.getId());
+
+        // Assert
+        assertFalse(daoService.isCached(Configuration.class, cfg.getId()));
+    }
+
+    @Test
+    public void daoService_findAllWithRelationsPageOfSixUsers_relationsLoadedWithBoundedQueries() throws Exception {
+        // Arrange
+        Permission read = daoService.create(new Permission("outlet:read"));
+        Permission write = daoService.create(new Permission("outlet:write"));
+        Permission admin = daoService.create(new Permission("system:admin"));
+        UserRole readers = new UserRole("readers");
+        readers.setId(1L);
+        readers.getPermissions().add(read);
+        UserRole writers = new UserRole("writers");
+        writers.setId(2L);
+        writers.getPermissions().add(write);
+        for (long id = 1; id <= 6; id++) {
+            UserAccount user = new UserAccount("user" + id);
+            user.setId(id);
+            user.getPermissions().add(admin);
+            user = daoService.create(user);
+            readers.getUserAccounts().add(user);
+            writers.getUserAccounts().add(user);
+        }
+        daoService.create(readers);
+        daoService.create(writers);
+        daoService.evict(UserAccount.class);
+        daoService.evict(UserRole.class);
+        daoService.evict(Permission.class);
+
+        // Act
+        QueryCounter counter = QueryCounter.start(daoService.getEntityManager().getEntityManagerFactory());
+        List<UserAccount> users = daoService.findAllWithRelations(UserAccount.class, 0, 6, "username", true,
+                "userRoles", "userRoles.permissions", "permissions");
+        int permissions = 0;
+        for (UserAccount user : users) {
+            permissions += user.getPermissions().size();
+            for (UserRole role : user.getUserRoles()) {
+                permissions += role.getPermissions().size();
+            }
+        }
+        int queries = counter.stop();
+
+        // Assert
+        assertEquals(6L, users.size());
+        assertEquals(18, permissions);
+        // Identifiers, user accounts and one query per relation
+        assertTrue("Expected at most 5 queries but " + queries + " were executed", queries <= 5);
+    }
+
+    @Test
+    public void daoService_walkRolesOfAllUsers_rolesReadInBatches() throws Exception {
+        // Arrange
+        Permission publish = daoService.create(new Permission("outlet:publish"));
+        UserRole publishers = new UserRole("publishers");
+        publishers.setId(11L);
+        publishers.getPermissions().add(publish);
+        for (long id = 11; id <= 16; id++) {
+            UserAccount user = new UserAccount("publisher" + id);
+            user.setId(id);
+            publishers.getUserAccounts().add(daoService.create(user));
+        }
+        daoService.create(publishers);
+        daoService.evict(UserAccount.class);
+        daoService.evict(UserRole.class);
+        daoService.evict(Permission.class);
+
+        // Act
+        QueryCounter counter = QueryCounter.start(daoService.getEntityManager().getEntityManagerFactory());
+        List<UserAccount> users = daoService.findAll(UserAccount.class);
+        for (UserAccount user : users) {
+            user.getPermissions().size();
+            for (UserRole role : user.getUserRoles()) {
+                role.getPermissions().size();
+            }
+        }
+        int queries = counter.stop();
+
+        // Assert
+        assertEquals(6, users.size());
+        // User accounts and one batch query per relation
+        assertTrue("Expected at most 4 queries but " + queries + " were executed", queries <= 4);
+    }
 }
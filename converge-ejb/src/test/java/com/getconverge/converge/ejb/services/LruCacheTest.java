@@ -0,0 +1,238 @@
+/*
+ * Copyright (C) 2014 Converge Consulting Limited
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.getconverge.converge.ejb.services;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class LruCacheTest {
+
+    private long now;
+    private AtomicInteger loads;
+    private LruCache.Loader<String, String> loader;
+
+    @Before
+    public void initLoader() {
+        now = 0;
+        loads = new AtomicInteger();
+        loader = new LruCache.Loader<String, String>() {
+            @Override
+            public String load(String key) {
+                loads.incrementAndGet();
+                return key.startsWith("unknown") ? null : key.toUpperCase();
+            }
+        };
+    }
+
+    private LruCache<String, String> createCache(int maximumSize, long timeToLive, long negativeTimeToLive) {
+        return new LruCache<String, String>(maximumSize, timeToLive, negativeTimeToLive) {
+            @Override
+            protected long currentTimeMillis() {
+                return now;
+            }
+        };
+    }
+
+    @Test
+    public void lruCache_getTwice_loadedOnce() {
+        // Arrange
+        LruCache<String, String> cache = createCache(10, 1000, 0);
+
+        // Act
+        String first = cache.get("allan", loader);
+        String second = cache.get("allan", loader);
+
+        // Assert
+        assertEquals("ALLAN", first);
+        assertEquals("ALLAN", second);
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(0.5, cache.getHitRatio(), 0.0001);
+        assertEquals(1, cache.getLoadCount());
+    }
+
+    @Test
+    public void lruCache_valueExpired_valueLoadedAgain() {
+        // Arrange
+        LruCache<String, String> cache = createCache(10, 1000, 0);
+        cache.get("allan", loader);
+        now = 1000;
+
+        // Act
+        cache.get("allan", loader);
+
+        // Assert
+        assertEquals(2, loads.get());
+        assertEquals(1, cache.getExpirationCount());
+    }
+
+    @Test
+    public void lruCache_cacheFull_leastRecentlyUsedEvicted() {
+        // Arrange
+        LruCache<String, String> cache = createCache(2, 1000, 0);
+        cache.get("a", loader);
+        cache.get("b", loader);
+        cache.get("a", loader);
+
+        // Act
+        cache.get("c", loader);
+        cache.get("a", loader);
+        cache.get("b", loader);
+
+        // Assert
+        assertEquals(4, loads.get());
+        assertEquals(2, cache.getEvictionCount());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void lruCache_unknownKeyWithNegativeCaching_loadedOnce() {
+        // Arrange
+        LruCache<String, String> cache = createCache(10, 1000, 100);
+
+        // Act
+        String first = cache.get("unknown", loader);
+        String second = cache.get("unknown", loader);
+
+        // Assert
+        assertNull(first);
+        assertNull(second);
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void lruCache_unknownKeyAfterNegativeExpiry_loadedAgain() {
+        // Arrange
+        LruCache<String, String> cache = createCache(10, 1000, 100);
+        cache.get("unknown", loader);
+        now = 100;
+
+        // Act
+        cache.get("unknown", loader);
+
+        // Assert
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void lruCache_unknownKeyWithoutNegativeCaching_loadedEachTime() {
+        // Arrange
+        LruCache<String, String> cache = createCache(10, 1000, 0);
+
+        // Act
+        cache.get("unknown", loader);
+        cache.get("unknown", loader);
+
+        // Assert
+        assertEquals(2, loads.get());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void lruCache_invalidate_valueLoadedAgain() {
+        // Arrange
+        LruCache<String, String> cache = createCache(10, 1000, 0);
+        cache.get("allan", loader);
+
+        // Act
+        cache.invalidate("allan");
+        cache.get("allan", loader);
+
+        // Assert
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void lruCache_invalidatedWhileLoading_loadedValueNotCached() {
+        // Arrange
+        final LruCache<String, String> cache = createCache(10, 1000, 0);
+        LruCache.Loader<String, String> invalidatingLoader = new LruCache.Loader<String, String>() {
+            @Override
+            public String load(String key) {
+                cache.invalidate(key);
+                return key;
+            }
+        };
+
+        // Act
+        String value = cache.get("allan", invalidatingLoader);
+
+        // Assert
+        assertEquals("allan", value);
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void lruCache_concurrentLookupsOfSameKey_loadedOnce() throws Exception {
+        // Arrange
+        final LruCache<String, String> cache = createCache(10, 1000, 0);
+        final CountDownLatch loading = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final LruCache.Loader<String, String> slowLoader = new LruCache.Loader<String, String>() {
+            @Override
+            public String load(String key) {
+                loads.incrementAndGet();
+                loading.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                return key.toUpperCase();
+            }
+        };
+        final String[] results = new String[2];
+        Thread first = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                results[0] = cache.get("allan", slowLoader);
+            }
+        });
+        Thread second = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                results[1] = cache.get("allan", slowLoader);
+            }
+        });
+
+        // Act
+        first.start();
+        loading.await();
+        second.start();
+        while (second.getState() != Thread.State.WAITING && second.isAlive()) {
+            Thread.sleep(1);
+        }
+        release.countDown();
+        first.join();
+        second.join();
+
+        // Assert
+        assertEquals(1, loads.get());
+        assertEquals("ALLAN", results[0]);
+        assertEquals("ALLAN", results[1]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void lruCache_zeroMaximumSize_throwIllegalArgumentException() {
+        // Act
+        createCache(0, 1000, 0);
+    }
+}
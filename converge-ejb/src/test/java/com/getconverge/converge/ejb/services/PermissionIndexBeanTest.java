@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) 2014 Converge Consulting Limited
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.getconverge.converge.ejb.services;
+
+import com.getconverge.converge.entities.Configuration;
+import com.getconverge.converge.entities.security.Permission;
+import com.getconverge.converge.entities.security.UserAccount;
+import com.getconverge.converge.entities.security.UserAccountSummary;
+import com.getconverge.converge.entities.security.UserRole;
+import javax.inject.Inject;
+import org.jboss.arquillian.container.test.api.Deployment;
+import org.jboss.arquillian.junit.Arquillian;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.spec.EnterpriseArchive;
+import org.jboss.shrinkwrap.api.spec.JavaArchive;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.junit.runner.RunWith;
+
+@RunWith(Arquillian.class)
+public class PermissionIndexBeanTest {
+
+    @Inject
+    private PermissionIndexBean permissionIndex;
+    @Inject
+    private DaoServiceBean daoService;
+
+    @Deployment
+    public static EnterpriseArchive prepareDeploymentForTesting() {
+        EnterpriseArchive ear = ShrinkWrap.create(EnterpriseArchive.class, "converge.ear");
+        JavaArchive jar = ShrinkWrap.create(JavaArchive.class, "converge-ejb.jar");
+        jar.addClasses(Configuration.class,
+                Permission.class,
+                UserAccount.class,
+                UserAccountSummary.class,
+                UserRole.class,
+                PermissionIndex.class,
+                PermissionIndexBean.class,
+                DaoServiceBean.class,
+                DataNotFoundException.class,
+                KeysetPage.class,
+                QueryBuilder.class,
+                QueryCounter.class,
+                ResultHandler.class);
+        jar.addAsManifestResource("META-INF/beans.xml", "beans.xml");
+        jar.addAsManifestResource("META-INF/test-persistence.xml", "persistence.xml");
+        ear.addAsModule(jar);
+        return ear;
+    }
+
+    @Before
+    public void initData() {
+        permissionIndex.invalidateAll();
+    }
+
+    @Test
+    public void permissionIndexBean_permissionGrantedDirectly_hasPermission() {
+        // Arrange
+        Permission permission = daoService.create(new Permission("outlet:view:101"));
+        UserAccount user = new UserAccount("direct");
+        user.setId(101L);
+        user.getPermissions().add(permission);
+        daoService.create(user);
+
+        // Act
+        boolean result = permissionIndex.hasPermission(user, permission);
+
+        // Assert
+        assertTrue(result);
+        assertEquals(1, permissionIndex.size());
+    }
+
+    @Test
+    public void permissionIndexBean_permissionGrantedThroughRole_hasPermission() {
+        // Arrange
+        Permission permission = daoService.create(new Permission("outlet:edit:102"));
+        UserAccount user = new UserAccount("member");
+        user.setId(102L);
+        user = daoService.create(user);
+        UserRole role = new UserRole("editors-102");
+        role.setId(102L);
+        role.getPermissions().add(permission);
+        role.getUserAccounts().add(user);
+        daoService.create(role);
+
+        // Act
+        boolean result = permissionIndex.hasPermission(user.getId(), "outlet:edit:102");
+
+        // Assert
+        assertTrue(result);
+    }
+
+    @Test
+    public void permissionIndexBean_permissionNotGranted_doesNotHavePermission() {
+        // Arrange
+        Permission permission = daoService.create(new Permission("outlet:delete:103"));
+        UserAccount user = new UserAccount("nobody");
+        user.setId(103L);
+        daoService.create(user);
+
+        // Act
+        boolean result = permissionIndex.hasPermission(user, permission);
+
+        // Assert
+        assertFalse(result);
+    }
+
+    @Test
+    public void permissionIndexBean_invalidateUserAccount_permissionsReloaded() {
+        // Arrange
+        Permission permission = daoService.create(new Permission("outlet:view:104"));
+        UserAccount user = new UserAccount("granted-later");
+        user.setId(104L);
+        user = daoService.create(user);
+        assertFalse(permissionIndex.hasPermission(user, permission));
+        user.getPermissions().add(permission);
+        daoService.update(user);
+
+        // Act
+        permissionIndex.invalidate(user.getId());
+
+        // Assert
+        assertTrue(permissionIndex.hasPermission(user, permission));
+    }
+
+    @Test
+    public void permissionIndexBean_grantPermissionToIndexedUserAccount_hasPermission() throws Exception {
+        // Arrange
+        Permission permission = daoService.create(new Permission("outlet:view:105"));
+        UserAccount user = new UserAccount("granted-directly");
+        user.setId(105L);
+        user = daoService.create(user);
+        assertFalse(permissionIndex.hasPermission(user, permission));
+
+        // Act
+        boolean granted = permissionIndex.grant(user.getId(), permission.getId());
+
+        // Assert
+        assertTrue(granted);
+        assertTrue(permissionIndex.hasPermission(user, permission));
+    }
+
+    @Test
+    public void permissionIndexBean_revokePermissionFromRole_memberNoLongerHasPermission() throws Exception {
+        // Arrange
+        Permission permission = daoService.create(new Permission("outlet:edit:106"));
+        UserAccount user = new UserAccount("revoked-member");
+        user.setId(106L);
+        user = daoService.create(user);
+        UserRole role = new UserRole("editors-106");
+        role.setId(106L);
+        role.getUserAccounts().add(user);
+        role = daoService.create(role);
+        permissionIndex.grantToRole(role.getId(), permission.getId());
+        assertTrue(permissionIndex.hasPermission(user, permission));
+
+        // Act
+        boolean revoked = permissionIndex.revokeFromRole(role.getId(), permission.getId());
+
+        // Assert
+        assertTrue(revoked);
+        assertFalse(permissionIndex.hasPermission(user, permission));
+    }
+
+    @Test
+    public void permissionIndexBean_checkPermissionStringTwice_secondCheckWithoutQueries() {
+        // Arrange
+        Permission permission = daoService.create(new Permission("outlet:view:107"));
+        UserAccount user = new UserAccount("checked-twice");
+        user.setId(107L);
+        user.getPermissions().add(permission);
+        user = daoService.create(user);
+        assertTrue(permissionIndex.hasPermission(user.getId(), "outlet:view:107"));
+
+        // Act
+        QueryCounter counter = QueryCounter.start(daoService.getEntityManager().getEntityManagerFactory());
+        boolean result = permissionIndex.hasPermission(user.getId(), "outlet:view:107");
+        int statements = counter.stop();
+
+        // Assert
+        assertTrue(result);
+        assertEquals(0, statements);
+    }
+}
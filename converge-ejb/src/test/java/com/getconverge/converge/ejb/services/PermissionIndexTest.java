@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2014 Converge Consulting Limited
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.getconverge.converge.ejb.services;
+
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class PermissionIndexTest {
+
+    @Test
+    public void permissionIndex_userAccountWithPermission_hasPermission() {
+        // Arrange
+        PermissionIndex index = new PermissionIndex();
+
+        // Act
+        index.put(1L, Arrays.asList(10L, 20L));
+
+        // Assert
+        assertTrue(index.hasPermission(1L, 10L));
+        assertTrue(index.hasPermission(1L, 20L));
+        assertFalse(index.hasPermission(1L, 30L));
+    }
+
+    @Test
+    public void permissionIndex_permissionInternedForAnotherUserAccount_doesNotHavePermission() {
+        // Arrange
+        PermissionIndex index = new PermissionIndex();
+        index.put(1L, Arrays.asList(10L));
+
+        // Act
+        index.put(2L, Arrays.asList(20L));
+
+        // Assert
+        assertTrue(index.hasPermission(1L, 10L));
+        assertFalse(index.hasPermission(1L, 20L));
+        assertFalse(index.hasPermission(2L, 10L));
+        assertTrue(index.hasPermission(2L, 20L));
+    }
+
+    @Test
+    public void permissionIndex_userAccountNotIndexed_doesNotHavePermission() {
+        // Arrange
+        PermissionIndex index = new PermissionIndex();
+
+        // Act
+        boolean result = index.hasPermission(1L, 10L);
+
+        // Assert
+        assertFalse(result);
+        assertFalse(index.contains(1L));
+    }
+
+    @Test
+    public void permissionIndex_userAccountWithoutPermissions_containedInIndex() {
+        // Arrange
+        PermissionIndex index = new PermissionIndex();
+
+        // Act
+        index.put(1L, Collections.<Long>emptyList());
+
+        // Assert
+        assertTrue(index.contains(1L));
+        assertFalse(index.hasPermission(1L, 10L));
+    }
+
+    @Test
+    public void permissionIndex_removeUserAccount_userAccountNoLongerContained() {
+        // Arrange
+        PermissionIndex index = new PermissionIndex();
+        index.put(1L, Arrays.asList(10L));
+        index.put(2L, Arrays.asList(10L));
+
+        // Act
+        index.remove(1L);
+
+        // Assert
+        assertFalse(index.contains(1L));
+        assertTrue(index.contains(2L));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    public void permissionIndex_clear_noUserAccountsContained() {
+        // Arrange
+        PermissionIndex index = new PermissionIndex();
+        index.put(1L, Arrays.asList(10L));
+        index.put(2L, Arrays.asList(20L));
+
+        // Act
+        index.clear();
+
+        // Assert
+        assertEquals(0, index.size());
+        assertFalse(index.hasPermission(1L, 10L));
+    }
+
+    @Test
+    public void permissionIndex_lookupUserAccountNotIndexed_returnNull() {
+        // Arrange
+        PermissionIndex index = new PermissionIndex();
+        index.put(1L, Arrays.asList(10L));
+
+        // Act
+        Boolean held = index.lookup(2L, 10L);
+
+        // Assert
+        assertNull(held);
+        assertEquals(Boolean.TRUE, index.lookup(1L, 10L));
+        assertEquals(Boolean.FALSE, index.lookup(1L, 20L));
+    }
+}
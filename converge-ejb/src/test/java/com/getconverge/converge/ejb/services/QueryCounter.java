@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2014 Converge Consulting Limited
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.getconverge.converge.ejb.services;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.persistence.EntityManagerFactory;
+import org.eclipse.persistence.jpa.JpaHelper;
+import org.eclipse.persistence.queries.DatabaseQuery;
+import org.eclipse.persistence.sessions.Session;
+import org.eclipse.persistence.sessions.SessionProfiler;
+import org.eclipse.persistence.tools.profiler.PerformanceMonitor;
+
+/**
+ * Counts the SQL statements executed by the persistence unit while
+ * registered. Queries answered from the shared cache do not execute a
+ * statement and are not counted. Used by tests asserting that a number of
+ * entities are loaded with a bounded number of statements.
+ */
+public class QueryCounter extends PerformanceMonitor {
+
+    private static final long serialVersionUID = 1L;
+
+    private final AtomicInteger count = new AtomicInteger();
+
+    private final transient Session serverSession;
+
+    private final transient SessionProfiler previous;
+
+    private QueryCounter(Session serverSession) {
+        this.serverSession = serverSession;
+        this.previous = serverSession.getProfiler();
+    }
+
+    /**
+     * Starts counting the SQL statements executed by a persistence unit.
+     * Only statements executed in transactions started after this method are
+     * counted.
+     *
+     * @param emf {@link EntityManagerFactory} of the persistence unit
+     * @return {@link QueryCounter} counting the statements
+     */
+    public static QueryCounter start(EntityManagerFactory emf) {
+        Session session = JpaHelper.getServerSession(emf);
+        QueryCounter counter = new QueryCounter(session);
+        session.setProfiler(counter);
+        return counter;
+    }
+
+    /**
+     * Stops counting SQL statements.
+     *
+     * @return Number of statements executed since the counter was started
+     */
+    public int stop() {
+        serverSession.setProfiler(previous);
+        return count.get();
+    }
+
+    @Override
+    public void startOperationProfile(String operationName, DatabaseQuery query, int weight) {
+        if (SessionProfiler.StatementExecute.equals(operationName)) {
+            count.incrementAndGet();
+        }
+        super.startOperationProfile(operationName, query, weight);
+    }
+}
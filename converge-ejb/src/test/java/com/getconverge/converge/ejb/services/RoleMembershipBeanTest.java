@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2014 Converge Consulting Limited
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.getconverge.converge.ejb.services;
+
+import com.getconverge.converge.entities.Configuration;
+import com.getconverge.converge.entities.security.Permission;
+import com.getconverge.converge.entities.security.UserAccount;
+import com.getconverge.converge.entities.security.UserAccountSummary;
+import com.getconverge.converge.entities.security.UserRole;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.inject.Inject;
+import org.jboss.arquillian.container.test.api.Deployment;
+import org.jboss.arquillian.junit.Arquillian;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.spec.EnterpriseArchive;
+import org.jboss.shrinkwrap.api.spec.JavaArchive;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.junit.runner.RunWith;
+
+@RunWith(Arquillian.class)
+public class RoleMembershipBeanTest {
+
+    @Inject
+    private RoleMembershipBean roleMembership;
+    @Inject
+    private DaoServiceBean daoService;
+
+    @Deployment
+    public static EnterpriseArchive prepareDeploymentForTesting() {
+        EnterpriseArchive ear = ShrinkWrap.create(EnterpriseArchive.class, "converge.ear");
+        JavaArchive jar = ShrinkWrap.create(JavaArchive.class, "converge-ejb.jar");
+        jar.addClasses(Configuration.class,
+                ConfigurationServiceBean.class,
+                ConfigurationCacheBean.class,
+                ConfigurationValue.class,
+                ConfigurationChanged.class,
+                ConfigurationChangedEvent.class,
+                ConfigurationVersionTracker.class,
+                Permission.class,
+                UserAccount.class,
+                UserAccountSummary.class,
+                UserRole.class,
+                LruCache.class,
+                PermissionIndex.class,
+                PermissionIndexBean.class,
+                RoleMembershipBean.class,
+                UserAccountCacheBean.class,
+                DaoServiceBean.class,
+                DataNotFoundException.class,
+                KeysetPage.class,
+                QueryBuilder.class,
+                ResultHandler.class);
+        jar.addAsManifestResource("META-INF/beans.xml", "beans.xml");
+        jar.addAsManifestResource("META-INF/test-persistence.xml", "persistence.xml");
+        ear.addAsModule(jar);
+        return ear;
+    }
+
+    @Before
+    public void initData() {
+        roleMembership.invalidateAll();
+    }
+
+    @Test
+    public void roleMembershipBean_roleWithMembers_memberIdsSortedByUsername() {
+        // Arrange
+        UserRole role = createRole(201L, "reporters-201", 201L, "charlie-201", "alice-201", "bob-201");
+
+        // Act
+        List<Long> ids = roleMembership.getMemberIds(role.getName());
+
+        // Assert
+        assertEquals(Arrays.asList(202L, 203L, 201L), ids);
+        assertEquals(1, roleMembership.size());
+    }
+
+    @Test
+    public void roleMembershipBean_unknownRole_noMembers() {
+        // Act
+        List<Long> ids = roleMembership.getMemberIds("unknown-202");
+
+        // Assert
+        assertTrue(ids.isEmpty());
+    }
+
+    @Test
+    public void roleMembershipBean_getMembersPage_membersOnPageReturned() {
+        // Arrange
+        UserRole role = createRole(211L, "editors-211", 211L, "a-211", "b-211", "c-211", "d-211", "e-211");
+
+        // Act
+        List<UserAccount> page = roleMembership.getMembers(role.getName(), 2, 2);
+
+        // Assert
+        assertEquals(2, page.size());
+        assertEquals("c-211", page.get(0).getUsername());
+        assertEquals("d-211", page.get(1).getUsername());
+    }
+
+    @Test
+    public void roleMembershipBean_forEachMemberInPages_allMembersHandledInOrder() {
+        // Arrange
+        UserRole role = createRole(221L, "subscribers-221", 221L, "a-221", "b-221", "c-221", "d-221", "e-221");
+        final List<String> usernames = new ArrayList<>();
+
+        // Act
+        long count = roleMembership.forEachMember(role.getName(), 2, new ResultHandler<UserAccount>() {
+            @Override
+            public void handle(UserAccount userAccount) {
+                usernames.add(userAccount.getUsername());
+            }
+        });
+
+        // Assert
+        assertEquals(5, count);
+        assertEquals(Arrays.asList("a-221", "b-221", "c-221", "d-221", "e-221"), usernames);
+    }
+
+    @Test
+    public void roleMembershipBean_addMember_memberIdsReloaded() throws Exception {
+        // Arrange
+        UserRole role = createRole(231L, "sub-editors-231", 231L, "a-231");
+        assertEquals(1, roleMembership.getMemberCount(role.getName()));
+        UserAccount user = new UserAccount("b-231");
+        user.setId(240L);
+        daoService.create(user);
+
+        // Act
+        boolean added = roleMembership.addMember(role.getId(), user.getId());
+
+        // Assert
+        assertTrue(added);
+        assertEquals(Arrays.asList(231L, 240L), roleMembership.getMemberIds(role.getName()));
+    }
+
+    @Test
+    public void roleMembershipBean_removeMember_memberIdsReloaded() throws Exception {
+        // Arrange
+        UserRole role = createRole(241L, "photographers-241", 241L, "a-241", "b-241");
+        assertEquals(2, roleMembership.getMemberCount(role.getName()));
+
+        // Act
+        boolean removed = roleMembership.removeMember(role.getId(), 241L);
+
+        // Assert
+        assertTrue(removed);
+        assertEquals(Arrays.asList(242L), roleMembership.getMemberIds(role.getName()));
+    }
+
+    private UserRole createRole(Long roleId, String roleName, Long firstUserAccountId, String... usernames) {
+        UserRole role = new UserRole(roleName);
+        role.setId(roleId);
+        long id = firstUserAccountId;
+        for (String username : usernames) {
+            UserAccount user = new UserAccount(username);
+            user.setId(id++);
+            role.getUserAccounts().add(daoService.create(user));
+        }
+        return daoService.create(role);
+    }
+}
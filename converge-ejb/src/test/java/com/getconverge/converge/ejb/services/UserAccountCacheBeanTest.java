@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2014 Converge Consulting Limited
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.getconverge.converge.ejb.services;
+
+import com.getconverge.converge.entities.Configuration;
+import com.getconverge.converge.entities.ConfigurationKey;
+import com.getconverge.converge.entities.security.Permission;
+import com.getconverge.converge.entities.security.UserAccount;
+import com.getconverge.converge.entities.security.UserAccountSummary;
+import com.getconverge.converge.entities.security.UserRole;
+import javax.inject.Inject;
+import org.jboss.arquillian.container.test.api.Deployment;
+import org.jboss.arquillian.junit.Arquillian;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.spec.EnterpriseArchive;
+import org.jboss.shrinkwrap.api.spec.JavaArchive;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.junit.runner.RunWith;
+
+@RunWith(Arquillian.class)
+public class UserAccountCacheBeanTest {
+
+    @Inject
+    private UserAccountCacheBean userAccountCache;
+    @Inject
+    private DaoServiceBean daoService;
+    @Inject
+    private ConfigurationServiceBean cfgService;
+
+    @Deployment
+    public static EnterpriseArchive prepareDeploymentForTesting() {
+        EnterpriseArchive ear = ShrinkWrap.create(EnterpriseArchive.class, "converge.ear");
+        JavaArchive jar = ShrinkWrap.create(JavaArchive.class, "converge-ejb.jar");
+        jar.addClasses(Configuration.class,
+                ConfigurationServiceBean.class,
+                ConfigurationCacheBean.class,
+                ConfigurationValue.class,
+                ConfigurationChanged.class,
+                ConfigurationChangedEvent.class,
+                ConfigurationVersionTracker.class,
+                Permission.class,
+                UserAccount.class,
+                UserAccountSummary.class,
+                UserRole.class,
+                LruCache.class,
+                UserAccountCacheBean.class,
+                DaoServiceBean.class,
+                DataNotFoundException.class,
+                KeysetPage.class,
+                QueryBuilder.class,
+                ResultHandler.class);
+        jar.addAsManifestResource("META-INF/beans.xml", "beans.xml");
+        jar.addAsManifestResource("META-INF/test-persistence.xml", "persistence.xml");
+        ear.addAsModule(jar);
+        return ear;
+    }
+
+    @Before
+    public void initData() {
+        userAccountCache.invalidateAll();
+    }
+
+    @Test
+    public void userAccountCacheBean_findByUsernameTwice_secondLookupServedByCache() {
+        // Arrange
+        UserAccount user = new UserAccount("cached-301");
+        user.setId(301L);
+        daoService.create(user);
+        long hits = userAccountCache.getHits();
+        long loads = userAccountCache.getLoads();
+
+        // Act
+        UserAccount first = userAccountCache.findByUsername("cached-301");
+        UserAccount second = userAccountCache.findByUsername("cached-301");
+
+        // Assert
+        assertEquals(Long.valueOf(301L), first.getId());
+        assertSame(first, second);
+        assertEquals(hits + 1, userAccountCache.getHits());
+        assertEquals(loads + 1, userAccountCache.getLoads());
+    }
+
+    @Test
+    public void userAccountCacheBean_unknownUsername_returnNullAndCacheUnknownUsername() {
+        // Arrange
+        long loads = userAccountCache.getLoads();
+
+        // Act
+        UserAccount first = userAccountCache.findByUsername("unknown-302");
+        UserAccount second = userAccountCache.findByUsername("unknown-302");
+
+        // Assert
+        assertNull(first);
+        assertNull(second);
+        assertEquals(loads + 1, userAccountCache.getLoads());
+    }
+
+    @Test
+    public void userAccountCacheBean_invalidateAfterUserAccountCreated_userAccountFound() {
+        // Arrange
+        assertNull(userAccountCache.findByUsername("created-303"));
+        UserAccount user = new UserAccount("created-303");
+        user.setId(303L);
+        daoService.create(user);
+
+        // Act
+        userAccountCache.invalidate("created-303");
+        UserAccount found = userAccountCache.findByUsername("created-303");
+
+        // Assert
+        assertNotNull(found);
+    }
+
+    @Test
+    public void userAccountCacheBean_updateUsername_previousUsernameInvalidated() {
+        // Arrange
+        UserAccount user = new UserAccount("before-304");
+        user.setId(304L);
+        daoService.create(user);
+        UserAccount cached = userAccountCache.findByUsername("before-304");
+        UserAccount renamed = new UserAccount("after-304");
+        renamed.setId(cached.getId());
+
+        // Act
+        userAccountCache.update(renamed);
+
+        // Assert
+        assertNull(userAccountCache.findByUsername("before-304"));
+        assertEquals(Long.valueOf(304L), userAccountCache.findByUsername("after-304").getId());
+    }
+
+    @Test
+    public void userAccountCacheBean_updateUsername_previousUsernameNoLongerFound() {
+        // Arrange
+        UserAccount user = new UserAccount("before-305");
+        user.setId(305L);
+        daoService.create(user);
+        assertEquals(1, daoService.findWithNamedQuery(UserAccount.class, UserAccount.FIND_BY_UID,
+                QueryBuilder.with(UserAccount.FIND_BY_UID_PARAM_USERNAME, "before-305").parameters()).size());
+        UserAccount renamed = new UserAccount("after-305");
+        renamed.setId(305L);
+
+        // Act
+        userAccountCache.update(renamed);
+
+        // Assert
+        assertTrue(daoService.findWithNamedQuery(UserAccount.class, UserAccount.FIND_BY_UID,
+                QueryBuilder.with(UserAccount.FIND_BY_UID_PARAM_USERNAME, "before-305").parameters()).isEmpty());
+    }
+
+    @Test
+    public void userAccountCacheBean_changeCacheSize_cacheCreatedWithNewSize() {
+        // Arrange
+        int size = userAccountCache.getMaximumSize();
+
+        // Act
+        cfgService.set(ConfigurationKey.USER_ACCOUNT_CACHE_SIZE, String.valueOf(size + 1));
+
+        // Assert
+        try {
+            assertEquals(size + 1, userAccountCache.getMaximumSize());
+        } finally {
+            cfgService.reset(ConfigurationKey.USER_ACCOUNT_CACHE_SIZE);
+        }
+        assertEquals(size, userAccountCache.getMaximumSize());
+    }
+}
@@ -41,7 +41,9 @@ public class ConfigurationDaoTest {
         jar.addClasses(Configuration.class,
                 DaoServiceBean.class,
                 DataNotFoundException.class,
-                QueryBuilder.class);
+                KeysetPage.class,
+                QueryBuilder.class,
+                ResultHandler.class);
         jar.addAsManifestResource("META-INF/beans.xml", "beans.xml");
         jar.addAsManifestResource("META-INF/test-persistence.xml", "persistence.xml");
         ear.addAsModule(jar);
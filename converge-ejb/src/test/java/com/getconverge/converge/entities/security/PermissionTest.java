@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2014 Converge Consulting Limited
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.getconverge.converge.entities.security;
+
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class PermissionTest {
+
+    @Test
+    public void permission_twoPermissionsWithSameId_equalsTrue() {
+        // Arrange
+        Permission permission1 = new Permission("outlet:read");
+        permission1.setId(1L);
+        Permission permission2 = new Permission("outlet:view");
+        permission2.setId(1L);
+
+        // Act
+        boolean permissionsEquals = permission1.equals(permission2);
+
+        // Assert
+        assertTrue(permissionsEquals);
+        assertEquals(permission1.hashCode(), permission2.hashCode());
+    }
+
+    @Test
+    public void permission_twoNewPermissionsWithSamePermissionString_equalsFalse() {
+        // Arrange
+        Permission permission1 = new Permission("outlet:read");
+        Permission permission2 = new Permission("outlet:read");
+
+        // Act
+        boolean permissionsEquals = permission1.equals(permission2);
+
+        // Assert
+        assertFalse(permissionsEquals);
+    }
+
+    @Test
+    public void permission_changePermissionStringInSet_setContainsPermission() {
+        // Arrange
+        Permission permission = new Permission("outlet:read");
+        permission.setId(1L);
+        Set<Permission> permissions = new HashSet<>();
+        permissions.add(permission);
+
+        // Act
+        permission.setPermission("outlet:view");
+
+        // Assert
+        assertTrue(permissions.contains(permission));
+    }
+
+    @Test
+    public void permission_grantSamePermissionTwice_permissionOnlyGrantedOnce() {
+        // Arrange
+        UserAccount user = new UserAccount("allan");
+        Permission permission = new Permission("outlet:read");
+        permission.setId(1L);
+        Permission samePermission = new Permission("outlet:read");
+        samePermission.setId(1L);
+        user.getPermissions().add(permission);
+
+        // Act
+        boolean added = user.getPermissions().add(samePermission);
+
+        // Assert
+        assertFalse(added);
+        assertEquals(1, user.getPermissions().size());
+    }
+}
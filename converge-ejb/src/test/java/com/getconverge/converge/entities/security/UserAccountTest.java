@@ -16,7 +16,9 @@
  */
 package com.getconverge.converge.entities.security;
 
+import java.util.HashSet;
 import java.util.Locale;
+import java.util.Set;
 import java.util.TimeZone;
 import org.junit.Test;
 import static org.junit.Assert.*;
@@ -145,10 +147,12 @@ public class UserAccountTest {
     }
 
     @Test
-    public void userAcount_twoUserAccountsWithSameUsername_equalsTrue() {
+    public void userAcount_twoUserAccountsWithSameId_equalsTrue() {
         // Arrange
         UserAccount ua1 = new UserAccount("allan");
-        UserAccount ua2 = new UserAccount("allan");
+        ua1.setId(1L);
+        UserAccount ua2 = new UserAccount("lykke");
+        ua2.setId(1L);
 
         // Act
         boolean usersEquals = ua1.equals(ua2);
@@ -159,10 +163,12 @@ public class UserAccountTest {
     }
 
     @Test
-    public void userAccount_twoUserAccountsWithDifferentUsername_equalsFalse() {
+    public void userAccount_twoUserAccountsWithDifferentId_equalsFalse() {
         // Arrange
         UserAccount ua1 = new UserAccount("allan");
-        UserAccount ua2 = new UserAccount("lykke");
+        ua1.setId(1L);
+        UserAccount ua2 = new UserAccount("allan");
+        ua2.setId(2L);
 
         // Act
         boolean usersEquals = ua1.equals(ua2);
@@ -172,6 +178,35 @@ public class UserAccountTest {
         assertNotEquals(ua1.hashCode(), ua2.hashCode());
     }
 
+    @Test
+    public void userAccount_twoNewUserAccountsWithSameUsername_equalsFalse() {
+        // Arrange
+        UserAccount ua1 = new UserAccount("allan");
+        UserAccount ua2 = new UserAccount("allan");
+
+        // Act
+        boolean usersEquals = ua1.equals(ua2);
+
+        // Assert
+        assertFalse(usersEquals);
+        assertTrue(ua1.equals(ua1));
+    }
+
+    @Test
+    public void userAccount_renameUserAccountInSet_setContainsUserAccount() {
+        // Arrange
+        UserAccount userAccount = new UserAccount("allan");
+        userAccount.setId(1L);
+        Set<UserAccount> userAccounts = new HashSet<>();
+        userAccounts.add(userAccount);
+
+        // Act
+        userAccount.setUsername("lykke");
+
+        // Assert
+        assertTrue(userAccounts.contains(userAccount));
+    }
+
     @Test
     public void userAccount_oneUserAccountOneNonUserAccount_equalsFalse() {
         // Arrange
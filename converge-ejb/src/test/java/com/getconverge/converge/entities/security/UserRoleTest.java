@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2014 Converge Consulting Limited
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.getconverge.converge.entities.security;
+
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class UserRoleTest {
+
+    @Test
+    public void userRole_twoUserRolesWithSameId_equalsTrue() {
+        // Arrange
+        UserRole role1 = new UserRole("editors");
+        role1.setId(1L);
+        UserRole role2 = new UserRole("writers");
+        role2.setId(1L);
+
+        // Act
+        boolean rolesEquals = role1.equals(role2);
+
+        // Assert
+        assertTrue(rolesEquals);
+        assertEquals(role1.hashCode(), role2.hashCode());
+    }
+
+    @Test
+    public void userRole_twoNewUserRolesWithSameName_equalsFalse() {
+        // Arrange
+        UserRole role1 = new UserRole("editors");
+        UserRole role2 = new UserRole("editors");
+
+        // Act
+        boolean rolesEquals = role1.equals(role2);
+
+        // Assert
+        assertFalse(rolesEquals);
+    }
+
+    @Test
+    public void userRole_renameUserRoleInSet_setContainsUserRole() {
+        // Arrange
+        UserRole role = new UserRole("editors");
+        role.setId(1L);
+        Set<UserRole> roles = new HashSet<>();
+        roles.add(role);
+
+        // Act
+        role.setName("writers");
+
+        // Assert
+        assertTrue(roles.contains(role));
+    }
+
+    @Test
+    public void userRole_addSameMemberTwice_memberOnlyAddedOnce() {
+        // Arrange
+        UserRole role = new UserRole("editors");
+        UserAccount member = new UserAccount("allan");
+        member.setId(1L);
+        UserAccount sameMember = new UserAccount("allan");
+        sameMember.setId(1L);
+        role.getUserAccounts().add(member);
+
+        // Act
+        boolean added = role.getUserAccounts().add(sameMember);
+
+        // Assert
+        assertFalse(added);
+        assertEquals(1, role.getUserAccounts().size());
+    }
+
+    @Test
+    public void userRole_userRoleWithIdAndName_toStringIsUniform() {
+        // Arrange
+        UserRole role = new UserRole("editors");
+        role.setId(12L);
+        String expectedResult = role.getClass().getName() + "[id=12/name=editors]";
+
+        // Act
+        String result = role.toString();
+
+        // Assert
+        assertEquals(expectedResult, result);
+    }
+}
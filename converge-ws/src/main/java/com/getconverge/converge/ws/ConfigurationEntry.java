@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2014 Converge Consulting Limited
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.getconverge.converge.ws;
+
+import java.io.Serializable;
+
+/**
+ * Key and value of a configuration exchanged through the
+ * {@link ConfigurationWebService}.
+ *
+ * @author Allan Lykke Christensen
+ */
+public class ConfigurationEntry implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private String key;
+
+    private String value;
+
+    /**
+     * Creates a new instance of {@link ConfigurationEntry}.
+     */
+    public ConfigurationEntry() {
+    }
+
+    /**
+     * Creates a new instance of {@link ConfigurationEntry} with the key and
+     * value preset.
+     *
+     * @param key Key of the configuration
+     * @param value Value of the configuration
+     */
+    public ConfigurationEntry(String key, String value) {
+        this.key = key;
+        this.value = value;
+    }
+
+    /**
+     * Gets the key of the configuration.
+     *
+     * @return Key of the configuration
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Sets the key of the configuration.
+     *
+     * @param key Key of the configuration
+     */
+    public void setKey(String key) {
+        this.key = key;
+    }
+
+    /**
+     * Gets the value of the configuration.
+     *
+     * @return Value of the configuration
+     */
+    public String getValue() {
+        return value;
+    }
+
+    /**
+     * Sets the value of the configuration.
+     *
+     * @param value Value of the configuration
+     */
+    public void setValue(String value) {
+        this.value = value;
+    }
+}
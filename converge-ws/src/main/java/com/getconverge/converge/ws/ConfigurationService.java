@@ -18,6 +18,12 @@ package com.getconverge.converge.ws;
 
 import com.getconverge.converge.ejb.services.ConfigurationServiceBean;
 import com.getconverge.converge.entities.ConfigurationKey;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import javax.ejb.EJB;
 import javax.jws.Oneway;
 import javax.jws.WebMethod;
@@ -40,6 +46,21 @@ public class ConfigurationService implements ConfigurationWebService {
         return cfgService.get(type, ConfigurationKey.valueOf(key));
     }
     
+    @WebMethod(operationName = "getAll")
+    @Override
+    public List<ConfigurationEntry> getAll(@WebParam(name = "key") List<String> keys) {
+        Set<ConfigurationKey> cfgKeys = EnumSet.noneOf(ConfigurationKey.class);
+        for (String key : keys) {
+            cfgKeys.add(ConfigurationKey.valueOf(key));
+        }
+
+        List<ConfigurationEntry> entries = new ArrayList<>();
+        for (Map.Entry<ConfigurationKey, String> value : cfgService.getAll(cfgKeys).entrySet()) {
+            entries.add(new ConfigurationEntry(value.getKey().name(), value.getValue()));
+        }
+        return entries;
+    }
+    
     @WebMethod(operationName = "set")
     @Oneway
     @Override
@@ -47,6 +68,16 @@ public class ConfigurationService implements ConfigurationWebService {
         cfgService.set(ConfigurationKey.valueOf(key), value);
     }
     
+    @WebMethod(operationName = "setAll")
+    @Override
+    public void setAll(@WebParam(name = "entry") List<ConfigurationEntry> entries) {
+        Map<ConfigurationKey, String> values = new EnumMap<>(ConfigurationKey.class);
+        for (ConfigurationEntry entry : entries) {
+            values.put(ConfigurationKey.valueOf(entry.getKey()), entry.getValue());
+        }
+        cfgService.setAll(values);
+    }
+    
     @WebMethod(operationName = "getApplicationLocale")
     @Override
     public String getApplicationLocale() {
@@ -16,6 +16,7 @@
  */
 package com.getconverge.converge.ws;
 
+import java.util.List;
 import javax.jws.Oneway;
 import javax.jws.WebMethod;
 import javax.jws.WebParam;
@@ -40,6 +41,17 @@ public interface ConfigurationWebService {
     @WebMethod(operationName = "get")
     <T> T get(@WebParam(name = "type") Class<T> type, @WebParam(name = "key") String key);
 
+    /**
+     * Gets the values of a list of configuration keys. The values are resolved
+     * using at most a single query.
+     *
+     * @param keys Keys of the configuration values
+     * @return {@link List} of the configuration values matching the given keys.
+     * Keys without a value are not included in the {@link List}
+     */
+    @WebMethod(operationName = "getAll")
+    List<ConfigurationEntry> getAll(@WebParam(name = "key") List<String> keys);
+
     /**
      * Gets the locale identifier of the application.
      *
@@ -87,6 +99,16 @@ public interface ConfigurationWebService {
     @Oneway
     void set(@WebParam(name = "key") String key, @WebParam(name = "value") String value);
 
+    /**
+     * Updates the values of a list of configurations in a single transaction.
+     * The updated values are stored in the persisted storage. If a value is
+     * invalid, no values are updated and a fault is returned.
+     *
+     * @param entries Keys and values of the configurations
+     */
+    @WebMethod(operationName = "setAll")
+    void setAll(@WebParam(name = "entry") List<ConfigurationEntry> entries);
+
     /**
      * Resets the value in the given configuration key.
      *
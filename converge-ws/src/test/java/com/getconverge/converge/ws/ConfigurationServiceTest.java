@@ -16,14 +16,23 @@
  */
 package com.getconverge.converge.ws;
 
+import com.getconverge.converge.ejb.services.ConfigurationCacheBean;
+import com.getconverge.converge.ejb.services.ConfigurationChanged;
+import com.getconverge.converge.ejb.services.ConfigurationChangedEvent;
 import com.getconverge.converge.ejb.services.ConfigurationServiceBean;
+import com.getconverge.converge.ejb.services.ConfigurationValue;
+import com.getconverge.converge.ejb.services.ConfigurationVersionTracker;
 import com.getconverge.converge.ejb.services.DaoServiceBean;
 import com.getconverge.converge.ejb.services.DataNotFoundException;
+import com.getconverge.converge.ejb.services.KeysetPage;
 import com.getconverge.converge.ejb.services.QueryBuilder;
+import com.getconverge.converge.ejb.services.ResultHandler;
 import com.getconverge.converge.entities.Configuration;
 import com.getconverge.converge.entities.ConfigurationKey;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Locale;
 import javax.xml.namespace.QName;
 import javax.xml.ws.Service;
@@ -46,16 +55,24 @@ public class ConfigurationServiceTest {
         EnterpriseArchive ear = ShrinkWrap.create(EnterpriseArchive.class, "converge.ear");
         WebArchive webServiceWar = ShrinkWrap.create(WebArchive.class, "converge-ws.war");
         webServiceWar.addClasses(
-                ConfigurationService.class
+                ConfigurationService.class,
+                ConfigurationEntry.class
         );
         webServiceWar.addManifest();
 
         JavaArchive ejb = ShrinkWrap.create(JavaArchive.class, "converge-ejb.jar");
         ejb.addClasses(Configuration.class,
                 ConfigurationServiceBean.class,
+                ConfigurationCacheBean.class,
+                ConfigurationValue.class,
+                ConfigurationChanged.class,
+                ConfigurationChangedEvent.class,
+                ConfigurationVersionTracker.class,
                 DaoServiceBean.class,
                 DataNotFoundException.class,
-                QueryBuilder.class);
+                KeysetPage.class,
+                QueryBuilder.class,
+                ResultHandler.class);
         ejb.addAsManifestResource("META-INF/beans.xml", "beans.xml");
         ejb.addAsManifestResource("META-INF/test-persistence.xml", "persistence.xml");
         ejb.addManifest();
@@ -143,6 +160,43 @@ public class ConfigurationServiceTest {
         assertEquals(expLongVersion, longVersion);
     }
 
+    @Test
+    public void configurationService_getAll_customAndDefaultConfigReturned() throws Exception {
+        // Arrange
+        String expVersion = "Injected Version";
+        ConfigurationWebService ws = getWebService();
+        ws.set(ConfigurationKey.VERSION.toString(), expVersion);
+
+        // Act
+        List<ConfigurationEntry> entries = ws.getAll(Arrays.asList(ConfigurationKey.VERSION.toString(), ConfigurationKey.LANGUAGE.toString()));
+
+        // Assert
+        assertEquals(2, entries.size());
+        for (ConfigurationEntry entry : entries) {
+            if (ConfigurationKey.VERSION.toString().equals(entry.getKey())) {
+                assertEquals(expVersion, entry.getValue());
+            } else {
+                assertEquals("en", entry.getValue());
+            }
+        }
+    }
+
+    @Test
+    public void configurationService_setAll_customConfigsCreated() throws Exception {
+        // Arrange
+        String expVersion = "Injected Version";
+        String expBuildTime = "Injected Build Time";
+        ConfigurationWebService ws = getWebService();
+
+        // Act
+        ws.setAll(Arrays.asList(new ConfigurationEntry(ConfigurationKey.VERSION.toString(), expVersion),
+                new ConfigurationEntry(ConfigurationKey.BUILD_TIME.toString(), expBuildTime)));
+
+        // Assert
+        assertEquals(expVersion, ws.getVersion());
+        assertEquals(expBuildTime, ws.getBuildTime());
+    }
+
     private ConfigurationWebService getWebService() throws MalformedURLException {
         URL wsdlDocumentLocation = new URL("http://localhost:9999/converge-ws/ConfigurationService?wsdl");
         String namespaceURI = "http://ws.converge.getconverge.com/";